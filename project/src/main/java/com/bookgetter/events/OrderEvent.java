@@ -0,0 +1,40 @@
+package com.bookgetter.events;
+
+import com.bookgetter.models.Order;
+
+/**
+ * Something that happened to an order, published after it has been persisted.
+ */
+public class OrderEvent {
+    public enum Type { CREATED, STATUS_CHANGED }
+
+    private final Type type;
+    private final Order order;
+    private final String oldStatus;
+    private final String newStatus;
+
+    private OrderEvent(Type type, Order order, String oldStatus, String newStatus) {
+        this.type = type;
+        this.order = order;
+        this.oldStatus = oldStatus;
+        this.newStatus = newStatus;
+    }
+
+    public static OrderEvent created(Order order) {
+        return new OrderEvent(Type.CREATED, order, null, order.getStatus());
+    }
+
+    public static OrderEvent statusChanged(Order order, String oldStatus) {
+        return new OrderEvent(Type.STATUS_CHANGED, order, oldStatus, order.getStatus());
+    }
+
+    public Type getType() { return type; }
+    public Order getOrder() { return order; }
+    public String getOldStatus() { return oldStatus; }
+
+    /**
+     * The status as of this event. The order object itself may already have moved on by
+     * the time a consumer sees the event.
+     */
+    public String getNewStatus() { return newStatus; }
+}
@@ -0,0 +1,135 @@
+package com.bookgetter.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process pipeline for order events. Every subscriber gets its own bounded queue and
+ * consumer thread, so a slow consumer never delays the others or the request that
+ * published the event. Consumers take whatever has queued up as one batch. When a queue
+ * is full, publishing blocks until there is room (back-pressure). On shutdown the queues
+ * are drained before the consumer threads stop.
+ */
+public class OrderEventBus {
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int MAX_BATCH = 256;
+    private static final long POLL_MILLIS = 200;
+    private static final long DRAIN_TIMEOUT_MILLIS = 30 * 1000L;
+    private static OrderEventBus instance;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean stopping = false;
+
+    private class Subscriber implements Runnable {
+        final String name;
+        final OrderEventListener listener;
+        final BlockingQueue<OrderEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final Thread thread;
+
+        Subscriber(String name, OrderEventListener listener) {
+            this.name = name;
+            this.listener = listener;
+            this.thread = new Thread(this, "bookgetter-events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<OrderEvent> batch = new ArrayList<>(MAX_BATCH);
+            while (true) {
+                OrderEvent first;
+                try {
+                    first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (first == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                deliver(batch);
+                batch.clear();
+            }
+        }
+
+        void deliver(List<OrderEvent> batch) {
+            try {
+                listener.onEvents(batch);
+            } catch (Exception e) {
+                System.out.println("[BookGetter] Order event consumer " + name + " failed on "
+                    + batch.size() + " event(s): " + e.getMessage());
+            }
+        }
+    }
+
+    private OrderEventBus() {}
+
+    public static synchronized OrderEventBus getInstance() {
+        if (instance == null) {
+            instance = new OrderEventBus();
+        }
+        return instance;
+    }
+
+    public synchronized void subscribe(String name, OrderEventListener listener) {
+        Subscriber subscriber = new Subscriber(name, listener);
+        subscribers.add(subscriber);
+        subscriber.thread.start();
+    }
+
+    /**
+     * Hand an event to every subscriber. Blocks while a subscriber's queue is full. Once
+     * the bus is shutting down, events are delivered on the caller's thread instead.
+     */
+    public void publish(OrderEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (stopping) {
+                subscriber.deliver(Collections.singletonList(event));
+                continue;
+            }
+            try {
+                subscriber.queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                subscriber.deliver(Collections.singletonList(event));
+            }
+        }
+    }
+
+    /**
+     * Stop accepting queued work and wait for every consumer to finish what is queued.
+     */
+    public void shutdown() {
+        stopping = true;
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!subscriber.thread.isAlive()) {
+                // Anything published while the consumer was exiting
+                List<OrderEvent> rest = new ArrayList<>();
+                subscriber.queue.drainTo(rest);
+                if (!rest.isEmpty()) {
+                    subscriber.deliver(rest);
+                }
+            } else {
+                System.out.println("[BookGetter] Order event consumer " + subscriber.name + " stopped with "
+                    + subscriber.queue.size() + " event(s) undelivered");
+            }
+        }
+    }
+}
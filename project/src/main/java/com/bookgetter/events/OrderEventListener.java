@@ -0,0 +1,11 @@
+package com.bookgetter.events;
+
+import java.util.List;
+
+/**
+ * Consumer of order events. Called on the subscriber's own thread with events in
+ * publication order, several at a time when they queue up.
+ */
+public interface OrderEventListener {
+    void onEvents(List<OrderEvent> events) throws Exception;
+}
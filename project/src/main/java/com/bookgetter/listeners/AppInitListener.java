@@ -1,15 +1,33 @@
 package com.bookgetter.listeners;
 
+import com.bookgetter.events.OrderEventBus;
+import com.bookgetter.services.AnalyticsService;
+import com.bookgetter.services.BestsellerService;
+import com.bookgetter.services.BookService;
+import com.bookgetter.services.CartService;
+import com.bookgetter.services.CheckoutService;
+import com.bookgetter.services.DashboardStats;
+import com.bookgetter.services.InventoryService;
+import com.bookgetter.services.OrderService;
+import com.bookgetter.services.SuggestService;
+import com.bookgetter.utils.BackgroundTasks;
 import com.bookgetter.utils.FileUtil;
+import com.bookgetter.utils.SessionUtil;
+import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
 
+import java.io.IOException;
+
 /**
  * Application lifecycle listener that initializes FileUtil with the correct webapp path.
  */
 @WebListener
 public class AppInitListener implements ServletContextListener {
+    private static final long INVENTORY_SWEEP_MILLIS = 30 * 1000L;
+    private static final long CART_SWEEP_MILLIS = 60 * 60 * 1000L;
+    private static final long ARCHIVE_RUN_MILLIS = 24 * 60 * 60 * 1000L;
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
@@ -19,12 +37,112 @@ public class AppInitListener implements ServletContextListener {
         // Initialize FileUtil with the webapp path
         FileUtil.init(webAppPath);
         
+        ServletContext context = sce.getServletContext();
+        if (Boolean.parseBoolean(getSetting(context, "bookgetter.session.stateless", "false"))) {
+            long ttlMinutes = Long.parseLong(getSetting(context, "bookgetter.session.ttlMinutes", "30"));
+            SessionUtil.enableStatelessMode(getSetting(context, "bookgetter.session.secret", ""),
+                ttlMinutes * 60 * 1000L);
+            System.out.println("[BookGetter] Stateless signed session tokens enabled");
+        }
+
+        String catalogStore = getSetting(context, "bookgetter.catalog.store", BookService.STORE_OBJECTS);
+        if (!BookService.STORE_OBJECTS.equals(catalogStore)) {
+            try {
+                BookService.getInstance().setCatalogStore(catalogStore);
+                System.out.println("[BookGetter] Catalog store: " + catalogStore);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("[BookGetter] Failed to switch catalog store: " + e.getMessage());
+            }
+        }
+
+        // Persisted analytics must see the orders of recovered checkouts, so they subscribe first
+        OrderEventBus events = OrderEventBus.getInstance();
+        try {
+            AnalyticsService.getInstance().init();
+            events.subscribe("analytics", AnalyticsService.getInstance());
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Failed to load sales analytics: " + e.getMessage());
+        }
+        try {
+            int recovered = CheckoutService.getInstance().recover();
+            if (recovered > 0) {
+                System.out.println("[BookGetter] Recovered " + recovered + " interrupted checkout(s)");
+            }
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Checkout recovery failed: " + e.getMessage());
+        }
+        try {
+            long holdMinutes = Long.parseLong(getSetting(context, "bookgetter.inventory.holdMinutes", "15"));
+            InventoryService.getInstance().init(holdMinutes * 60 * 1000L);
+            BackgroundTasks.schedule("inventory-sweeper", InventoryService.getInstance()::sweepExpired,
+                INVENTORY_SWEEP_MILLIS);
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Failed to load inventory: " + e.getMessage());
+        }
+        long cartIdleMillis = Long.parseLong(getSetting(context, "bookgetter.cart.idleHours", "720")) * 60 * 60 * 1000L;
+        sweepCarts(cartIdleMillis);
+        BackgroundTasks.schedule("cart-sweeper", () -> sweepCarts(cartIdleMillis), CART_SWEEP_MILLIS);
+        long archiveAfterMillis = Long.parseLong(getSetting(context, "bookgetter.orders.archiveAfterDays", "90"))
+            * 24 * 60 * 60 * 1000L;
+        archiveOrders(archiveAfterMillis);
+        BackgroundTasks.schedule("order-archiver", () -> archiveOrders(archiveAfterMillis), ARCHIVE_RUN_MILLIS);
+        try {
+            DashboardStats.getInstance().rebuild();
+            events.subscribe("dashboard", DashboardStats.getInstance());
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Failed to build dashboard statistics: " + e.getMessage());
+        }
+        try {
+            BestsellerService.getInstance().init();
+            events.subscribe("bestsellers", BestsellerService.getInstance());
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Failed to build best-seller leaderboards: " + e.getMessage());
+        }
+        // Built in the background; sales and book changes meanwhile are held until it is ready
+        events.subscribe("suggestions", SuggestService.getInstance());
+        SuggestService.getInstance().init();
+
         System.out.println("[BookGetter] Application initialized");
         System.out.println("[BookGetter] Data directory: " + FileUtil.getDataDirPath());
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        OrderEventBus.getInstance().shutdown();
+        BackgroundTasks.shutdown();
         System.out.println("[BookGetter] Application shutting down");
     }
+
+    private static void sweepCarts(long idleMillis) {
+        try {
+            int removed = CartService.getInstance().evictIdleCarts(idleMillis);
+            if (removed > 0) {
+                System.out.println("[BookGetter] Removed " + removed + " empty or abandoned cart(s)");
+            }
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Cart sweep failed: " + e.getMessage());
+        }
+    }
+
+    private static void archiveOrders(long minAgeMillis) {
+        try {
+            int archived = OrderService.getInstance().archiveOrders(minAgeMillis);
+            if (archived > 0) {
+                System.out.println("[BookGetter] Archived " + archived + " old order(s)");
+            }
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Order archival failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read a setting from a JVM system property, falling back to the web.xml context-param.
+     */
+    private static String getSetting(ServletContext context, String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = context.getInitParameter(name);
+        }
+        return value == null ? defaultValue : value.trim();
+    }
 }
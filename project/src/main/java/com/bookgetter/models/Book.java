@@ -32,6 +32,33 @@ public class Book {
         this.stock = stock;
     }
 
+    public Book(String id, String title, String author, String isbn, double price, String category,
+                String description, String imageUrl, int stock, long createdAt) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.isbn = isbn;
+        this.price = price;
+        this.category = category;
+        this.description = description;
+        this.imageUrl = imageUrl;
+        this.stock = stock;
+        this.createdAt = createdAt;
+    }
+
+    public Book(Book other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.author = other.author;
+        this.isbn = other.isbn;
+        this.price = other.price;
+        this.category = other.category;
+        this.description = other.description;
+        this.imageUrl = other.imageUrl;
+        this.stock = other.stock;
+        this.createdAt = other.createdAt;
+    }
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
 
@@ -7,6 +7,8 @@ public class OrderItem {
     private double price;
     private int quantity;
     private double subtotal;
+    /** The book's category when the order was placed; null on orders from before it was kept. */
+    private String category;
 
     public OrderItem() {}
 
@@ -37,4 +39,7 @@ public class OrderItem {
 
     public double getSubtotal() { return subtotal; }
     public void setSubtotal(double subtotal) { this.subtotal = subtotal; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
 }
@@ -25,6 +25,17 @@ public class User {
         this.role = role;
     }
 
+    public User(User other) {
+        this.id = other.id;
+        this.username = other.username;
+        this.password = other.password;
+        this.email = other.email;
+        this.role = other.role;
+        this.address = other.address;
+        this.phone = other.phone;
+        this.createdAt = other.createdAt;
+    }
+
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
 
@@ -5,6 +5,7 @@ import com.bookgetter.models.Order;
 import com.bookgetter.models.User;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,35 +22,27 @@ public class AdminService {
         return instance;
     }
 
-    public Map<String, Object> getDashboardStats() throws IOException {
-        BookService bookService = BookService.getInstance();
-        OrderService orderService = OrderService.getInstance();
-        UserService userService = UserService.getInstance();
-
-        List<Book> books = bookService.getAllBooks();
-        List<Order> orders = orderService.getAllOrders();
-        List<User> users = userService.getAllUsers();
-
-        long customerCount = users.stream()
-            .filter(u -> "customer".equals(u.getRole()))
-            .count();
-
-        double totalRevenue = orders.stream()
-            .mapToDouble(Order::getTotalAmount)
-            .sum();
+    public Map<String, Object> getDashboardStats() {
+        return DashboardStats.getInstance().snapshot();
+    }
 
-        long pendingOrders = orders.stream()
-            .filter(o -> "pending".equals(o.getStatus()))
-            .count();
+    public Map<String, Object> getSalesAnalytics(LocalDate from, LocalDate to, String granularity,
+                                                 String category) {
+        return AnalyticsService.getInstance().query(from, to, granularity, category);
+    }
 
+    /**
+     * Version, layout and approximate heap footprint of the in-memory catalog.
+     */
+    public Map<String, Object> getCatalogStats() throws IOException {
+        CatalogSnapshot snapshot = BookService.getInstance().getSnapshot();
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalBooks", books.size());
-        stats.put("totalOrders", orders.size());
-        stats.put("totalCustomers", customerCount);
-        stats.put("totalRevenue", totalRevenue);
-        stats.put("pendingOrders", pendingOrders);
-        stats.put("totalUsers", users.size());
-
+        stats.put("version", snapshot.getVersion());
+        stats.put("books", snapshot.getBooks().size());
+        stats.put("store", snapshot.getStoreKind());
+        stats.put("estimatedBytes", snapshot.getEstimatedBytes());
+        stats.put("offHeapBytes", snapshot.getOffHeapBytes());
+        stats.put("searchCache", BookService.getInstance().getSearchCacheStats());
         return stats;
     }
 
@@ -61,6 +54,11 @@ public class AdminService {
         return OrderService.getInstance().getAllOrders();
     }
 
+    public Map<String, Object> queryOrders(String status, String userId, Long from, Long to,
+                                           String cursor, int limit) throws IOException {
+        return OrderService.getInstance().queryOrders(status, userId, from, to, cursor, limit);
+    }
+
     public List<User> getAllUsers() throws IOException {
         return UserService.getInstance().getAllUsers();
     }
@@ -80,4 +78,8 @@ public class AdminService {
     public Order updateOrderStatus(String orderId, String status) throws IOException {
         return OrderService.getInstance().updateOrderStatus(orderId, status);
     }
+
+    public List<Order> updateOrderStatuses(Map<String, String> updates) throws IOException {
+        return OrderService.getInstance().updateOrderStatuses(updates);
+    }
 }
@@ -0,0 +1,314 @@
+package com.bookgetter.services;
+
+import com.bookgetter.events.OrderEvent;
+import com.bookgetter.events.OrderEventListener;
+import com.bookgetter.models.Book;
+import com.bookgetter.models.Order;
+import com.bookgetter.models.OrderItem;
+import com.bookgetter.utils.FileUtil;
+import com.bookgetter.utils.JsonUtil;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Sales rollups pre-aggregated into hourly and daily buckets (with a per-category split),
+ * maintained from order events as orders are created or change status and persisted to
+ * analytics.json so a restart does not have to rescan the order history. Hourly buckets
+ * are kept for {@link #HOURLY_RETENTION_DAYS} days; daily ones for good.
+ * <p>
+ * Order events only live in memory, so the file also records how far it has got: the
+ * newest order applied and the orders applied as cancelled. At startup, orders created
+ * after that and cancellations that do not match are applied, which makes up for events
+ * lost to a crash or a failed batch.
+ */
+public class AnalyticsService implements OrderEventListener {
+    private static final String ANALYTICS_FILE = "analytics.json";
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final long HOURLY_RETENTION_DAYS = 90;
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:00");
+    private static AnalyticsService instance;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private Rollups rollups = new Rollups();
+
+    static class Totals {
+        long orders;
+        long units;
+        double revenue;
+
+        void add(long orders, long units, double revenue) {
+            this.orders += orders;
+            this.units += units;
+            this.revenue += revenue;
+        }
+    }
+
+    static class Bucket extends Totals {
+        Map<String, Totals> categories = new HashMap<>();
+    }
+
+    /** Persisted form: keys are epoch hours and epoch days (in the server time zone). */
+    static class Rollups {
+        TreeMap<Long, Bucket> hourly = new TreeMap<>();
+        TreeMap<Long, Bucket> daily = new TreeMap<>();
+        /** Creation time of the newest order applied; null in files from before it was kept. */
+        Long lastOrderAt;
+        /** The applied orders created at exactly {@link #lastOrderAt}. */
+        Set<String> lastOrderIds = new HashSet<>();
+        /** Applied orders that are not counted, because they were cancelled. */
+        Set<String> uncounted = new HashSet<>();
+    }
+
+    private AnalyticsService() {}
+
+    public static synchronized AnalyticsService getInstance() {
+        if (instance == null) {
+            instance = new AnalyticsService();
+        }
+        return instance;
+    }
+
+    /**
+     * Load persisted rollups and catch up with orders they have missed, or build them from
+     * the order history when there are none (or they cannot be read).
+     */
+    public synchronized void init() throws IOException {
+        String json = FileUtil.readFile(ANALYTICS_FILE);
+        if (json != null && !json.trim().isEmpty()) {
+            try {
+                rollups = JsonUtil.fromJson(json, Rollups.class);
+            } catch (JsonParseException e) {
+                System.out.println("[BookGetter] Rebuilding damaged " + ANALYTICS_FILE + ": " + e.getMessage());
+                rollups = null;
+            }
+            if (rollups != null && rollups.lastOrderAt != null) {
+                int caught = catchUp();
+                if (caught > 0) {
+                    System.out.println("[BookGetter] Sales analytics caught up with " + caught + " order(s)");
+                    save();
+                }
+                return;
+            }
+        }
+        rollups = new Rollups();
+        for (Order order : OrderService.getInstance().getAllOrders()) {
+            record(order);
+        }
+        save();
+    }
+
+    /**
+     * Apply orders created after the newest one applied, and cancellations (or their
+     * reversal) that were not.
+     * @return number of orders applied
+     */
+    private int catchUp() throws IOException {
+        OrderService orders = OrderService.getInstance();
+        int caught = 0;
+        long lastOrderAt = rollups.lastOrderAt;
+        Set<String> lastOrderIds = new HashSet<>(rollups.lastOrderIds);
+        for (Order order : orders.getOrdersCreatedSince(lastOrderAt)) {
+            if (order.getCreatedAt() > lastOrderAt || !lastOrderIds.contains(order.getId())) {
+                record(order);
+                caught++;
+            }
+        }
+        Set<String> cancelled = new HashSet<>(orders.getOrderIdsByStatus("cancelled"));
+        for (String orderId : cancelled) {
+            if (!rollups.uncounted.contains(orderId)) {
+                Order order = orders.getOrderById(orderId);
+                if (order != null) {
+                    apply(order, -1);
+                    rollups.uncounted.add(orderId);
+                    caught++;
+                }
+            }
+        }
+        for (String orderId : new ArrayList<>(rollups.uncounted)) {
+            if (!cancelled.contains(orderId)) {
+                Order order = orders.getOrderById(orderId);
+                if (order != null) {
+                    apply(order, 1);
+                }
+                rollups.uncounted.remove(orderId);
+                caught++;
+            }
+        }
+        return caught;
+    }
+
+    /** Apply an order not seen before, as it stands now. */
+    private void record(Order order) throws IOException {
+        if (isCounted(order.getStatus())) {
+            apply(order, 1);
+        } else {
+            rollups.uncounted.add(order.getId());
+        }
+        advance(order);
+    }
+
+    /** Move the watermark up to a newly applied order. */
+    private void advance(Order order) {
+        long createdAt = order.getCreatedAt();
+        if (rollups.lastOrderAt == null || createdAt > rollups.lastOrderAt) {
+            rollups.lastOrderAt = createdAt;
+            rollups.lastOrderIds.clear();
+        }
+        if (createdAt == rollups.lastOrderAt) {
+            rollups.lastOrderIds.add(order.getId());
+        }
+    }
+
+    /**
+     * Apply a batch of order events and persist the rollups once for the whole batch.
+     */
+    @Override
+    public synchronized void onEvents(List<OrderEvent> events) throws IOException {
+        boolean changed = false;
+        for (OrderEvent event : events) {
+            boolean before = event.getType() == OrderEvent.Type.STATUS_CHANGED && isCounted(event.getOldStatus());
+            boolean after = isCounted(event.getNewStatus());
+            if (before != after) {
+                apply(event.getOrder(), after ? 1 : -1);
+                changed = true;
+            }
+            String orderId = event.getOrder().getId();
+            changed |= after ? rollups.uncounted.remove(orderId) : rollups.uncounted.add(orderId);
+            if (event.getType() == OrderEvent.Type.CREATED) {
+                advance(event.getOrder());
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * Range query over whole days, inclusive of both ends.
+     * @param granularity "day" or "hour"
+     * @param category limit figures to one category, or null for all categories with a breakdown
+     */
+    public synchronized Map<String, Object> query(LocalDate from, LocalDate to, String granularity,
+                                                  String category) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        boolean hourly = "hour".equals(granularity);
+        Map<Long, Bucket> range;
+        if (hourly) {
+            long fromHour = from.atStartOfDay(zone).toInstant().toEpochMilli() / HOUR_MILLIS;
+            long toHour = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() / HOUR_MILLIS;
+            range = rollups.hourly.subMap(fromHour, true, toHour, false);
+        } else {
+            range = rollups.daily.subMap(from.toEpochDay(), true, to.toEpochDay(), true);
+        }
+
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        Totals total = new Totals();
+        for (Map.Entry<Long, Bucket> entry : range.entrySet()) {
+            Bucket bucket = entry.getValue();
+            Totals figures = category == null ? bucket : bucket.categories.get(category);
+            if (figures == null) {
+                continue;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("bucket", hourly
+                ? HOUR_FORMAT.format(Instant.ofEpochMilli(entry.getKey() * HOUR_MILLIS).atZone(zone))
+                : LocalDate.ofEpochDay(entry.getKey()).toString());
+            row.put("orders", figures.orders);
+            row.put("units", figures.units);
+            row.put("revenue", figures.revenue);
+            if (category == null) {
+                // A copy: the response is serialized after the lock is released
+                Map<String, Totals> categories = new HashMap<>();
+                for (Map.Entry<String, Totals> split : bucket.categories.entrySet()) {
+                    Totals copy = new Totals();
+                    copy.add(split.getValue().orders, split.getValue().units, split.getValue().revenue);
+                    categories.put(split.getKey(), copy);
+                }
+                row.put("categories", categories);
+            }
+            buckets.add(row);
+            total.add(figures.orders, figures.units, figures.revenue);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", from.toString());
+        result.put("to", to.toString());
+        result.put("granularity", hourly ? "hour" : "day");
+        result.put("category", category);
+        result.put("totals", total);
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    private boolean isCounted(String status) {
+        return !"cancelled".equals(status);
+    }
+
+    /**
+     * Add (sign 1) or remove (sign -1) an order. The category split comes from the order's
+     * own items, so a cancellation takes off exactly what its creation added even if the
+     * books have since been deleted or recategorized. Hours that are no longer kept are
+     * left alone.
+     */
+    private void apply(Order order, int sign) throws IOException {
+        Map<String, Totals> byCategory = new HashMap<>();
+        long units = 0;
+        for (OrderItem item : order.getItems()) {
+            Totals totals = byCategory.computeIfAbsent(categoryOf(item), c -> new Totals());
+            totals.add(0, item.getQuantity(), item.getSubtotal());
+            units += item.getQuantity();
+        }
+
+        long hour = order.getCreatedAt() / HOUR_MILLIS;
+        long day = Instant.ofEpochMilli(order.getCreatedAt()).atZone(zone).toLocalDate().toEpochDay();
+        List<Bucket> buckets = new ArrayList<>();
+        if (hour >= firstKeptHour()) {
+            buckets.add(rollups.hourly.computeIfAbsent(hour, h -> new Bucket()));
+        }
+        buckets.add(rollups.daily.computeIfAbsent(day, d -> new Bucket()));
+        for (Bucket bucket : buckets) {
+            bucket.add(sign, sign * units, sign * order.getTotalAmount());
+            for (Map.Entry<String, Totals> entry : byCategory.entrySet()) {
+                Totals totals = entry.getValue();
+                bucket.categories.computeIfAbsent(entry.getKey(), c -> new Totals())
+                    .add(sign, sign * totals.units, sign * totals.revenue);
+            }
+        }
+    }
+
+    /** Orders placed before items recorded their category fall back to the current book. */
+    private String categoryOf(OrderItem item) throws IOException {
+        String category = item.getCategory();
+        if (category == null) {
+            Book book = BookService.getInstance().getBookById(item.getBookId());
+            category = book == null ? null : book.getCategory();
+        }
+        return category == null ? "Uncategorized" : category;
+    }
+
+    private long firstKeptHour() {
+        return System.currentTimeMillis() / HOUR_MILLIS - HOURLY_RETENTION_DAYS * 24;
+    }
+
+    /** Drops expired hourly buckets first, so the file stays bounded. */
+    private void save() throws IOException {
+        rollups.hourly.headMap(firstKeptHour()).clear();
+        FileUtil.writeFile(ANALYTICS_FILE, JsonUtil.toJson(rollups));
+    }
+}
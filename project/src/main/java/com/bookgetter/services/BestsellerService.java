@@ -0,0 +1,282 @@
+package com.bookgetter.services;
+
+import com.bookgetter.events.OrderEvent;
+import com.bookgetter.events.OrderEventListener;
+import com.bookgetter.models.Book;
+import com.bookgetter.models.Order;
+import com.bookgetter.models.OrderItem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Best-seller leaderboards (overall and per category) for the last 24 hours, the last
+ * 7 days and all time. Units sold per book are kept in hourly sliding-window counters and
+ * each leaderboard is a bounded top-K list updated from order events, so a query is O(K).
+ * Windowed boards are rebuilt from the counters once per hour as old hours slide out.
+ */
+public class BestsellerService implements OrderEventListener {
+    public static final String WINDOW_DAY = "24h";
+    public static final String WINDOW_WEEK = "7d";
+    public static final String WINDOW_ALL = "all";
+
+    private static final int TOP_K = 50;
+    private static final int WINDOW_SLOTS = 7 * 24;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final String ALL_CATEGORIES = "";
+    private static BestsellerService instance;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, TopK>> boards = new ConcurrentHashMap<>();
+    private volatile long boardsHour = currentHour();
+
+    /** Units sold for one book: all-time total plus a ring of hourly slots covering 7 days. */
+    private static class Counter {
+        final String bookId;
+        volatile String title;
+        volatile String author;
+        volatile String category;
+        private long allTime;
+        private final long[] slots = new long[WINDOW_SLOTS];
+        private final long[] slotHours = new long[WINDOW_SLOTS];
+
+        Counter(String bookId) {
+            this.bookId = bookId;
+        }
+
+        synchronized void add(long hour, int quantity) {
+            allTime += quantity;
+            if (hour <= currentHour() - WINDOW_SLOTS) {
+                return;
+            }
+            int slot = (int) Math.floorMod(hour, (long) WINDOW_SLOTS);
+            if (slotHours[slot] != hour) {
+                slotHours[slot] = hour;
+                slots[slot] = 0;
+            }
+            slots[slot] += quantity;
+        }
+
+        synchronized long sum(long nowHour, int hours) {
+            long total = 0;
+            for (int i = 0; i < WINDOW_SLOTS; i++) {
+                if (slotHours[i] > nowHour - hours && slotHours[i] <= nowHour) {
+                    total += slots[i];
+                }
+            }
+            return total;
+        }
+
+        synchronized long allTime() {
+            return allTime;
+        }
+    }
+
+    private static class Entry {
+        final Counter counter;
+        final long units;
+
+        Entry(Counter counter, long units) {
+            this.counter = counter;
+            this.units = units;
+        }
+    }
+
+    /** Bounded list of the K highest scores, kept sorted in descending order. */
+    private static class TopK {
+        private final Entry[] entries = new Entry[TOP_K];
+        private int size;
+
+        synchronized void offer(Counter counter, long units) {
+            int existing = -1;
+            for (int i = 0; i < size; i++) {
+                if (entries[i].counter == counter) {
+                    existing = i;
+                    break;
+                }
+            }
+            if (existing < 0) {
+                if (size == TOP_K && entries[size - 1].units >= units) {
+                    return;
+                }
+                existing = size < TOP_K ? size++ : size - 1;
+            }
+            int i = existing;
+            while (i > 0 && entries[i - 1].units < units) {
+                entries[i] = entries[i - 1];
+                i--;
+            }
+            while (i < size - 1 && entries[i + 1].units > units) {
+                entries[i] = entries[i + 1];
+                i++;
+            }
+            entries[i] = new Entry(counter, units);
+        }
+
+        synchronized List<Entry> top(int limit) {
+            List<Entry> result = new ArrayList<>(Math.min(limit, size));
+            for (int i = 0; i < size && i < limit; i++) {
+                result.add(entries[i]);
+            }
+            return result;
+        }
+    }
+
+    private BestsellerService() {}
+
+    public static synchronized BestsellerService getInstance() {
+        if (instance == null) {
+            instance = new BestsellerService();
+        }
+        return instance;
+    }
+
+    /**
+     * Replay the order history once at startup.
+     */
+    public synchronized void init() throws IOException {
+        Map<String, String> categories = new HashMap<>();
+        for (Book book : BookService.getInstance().getAllBooks()) {
+            categories.put(book.getId(), book.getCategory());
+        }
+        for (Order order : OrderService.getInstance().getAllOrders()) {
+            for (OrderItem item : order.getItems()) {
+                Counter counter = counterFor(item, categories.get(item.getBookId()));
+                counter.add(order.getCreatedAt() / HOUR_MILLIS, item.getQuantity());
+            }
+        }
+        rebuildBoards(currentHour());
+    }
+
+    /**
+     * Count the units of newly created orders, filed under each book's current category.
+     */
+    @Override
+    public synchronized void onEvents(List<OrderEvent> events) throws IOException {
+        BookService bookService = BookService.getInstance();
+        long nowHour = currentHour();
+        if (nowHour != boardsHour) {
+            rebuildBoards(nowHour);
+        }
+        for (OrderEvent event : events) {
+            if (event.getType() != OrderEvent.Type.CREATED) {
+                continue;
+            }
+            Order order = event.getOrder();
+            long orderHour = order.getCreatedAt() / HOUR_MILLIS;
+            for (OrderItem item : order.getItems()) {
+                Book book = bookService.getBookById(item.getBookId());
+                Counter counter = counterFor(item, book != null ? book.getCategory() : item.getCategory());
+                counter.add(orderHour, item.getQuantity());
+                offer(counter, nowHour);
+            }
+        }
+    }
+
+    /**
+     * @param window one of {@link #WINDOW_DAY}, {@link #WINDOW_WEEK} or {@link #WINDOW_ALL}
+     * @param category restrict to one category, or null for the overall board
+     */
+    public List<Map<String, Object>> getTopSellers(String window, String category, int limit) {
+        if (!WINDOW_DAY.equals(window) && !WINDOW_WEEK.equals(window) && !WINDOW_ALL.equals(window)) {
+            throw new IllegalArgumentException("Unknown window: " + window);
+        }
+        long nowHour = currentHour();
+        if (nowHour != boardsHour && !WINDOW_ALL.equals(window)) {
+            synchronized (this) {
+                if (nowHour != boardsHour) {
+                    rebuildBoards(nowHour);
+                }
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        TopK board = boards.getOrDefault(window, Map.of())
+            .get(category == null ? ALL_CATEGORIES : category);
+        if (board == null) {
+            return result;
+        }
+        for (Entry entry : board.top(Math.min(limit, TOP_K))) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("bookId", entry.counter.bookId);
+            row.put("title", entry.counter.title);
+            row.put("author", entry.counter.author);
+            row.put("category", entry.counter.category);
+            row.put("unitsSold", entry.units);
+            result.add(row);
+        }
+        return result;
+    }
+
+    /** All-time units sold of one book. */
+    public long getUnitsSold(String bookId) {
+        Counter counter = counters.get(bookId);
+        return counter == null ? 0 : counter.allTime();
+    }
+
+    private Counter counterFor(OrderItem item, String category) {
+        Counter counter = counters.computeIfAbsent(item.getBookId(), Counter::new);
+        counter.title = item.getBookTitle();
+        counter.author = item.getBookAuthor();
+        if (category != null) {
+            counter.category = category;
+        }
+        return counter;
+    }
+
+    private void offer(Counter counter, long nowHour) {
+        offerAll(board(WINDOW_DAY, ALL_CATEGORIES), categoryBoard(WINDOW_DAY, counter),
+            counter.sum(nowHour, 24), counter);
+        offerAll(board(WINDOW_WEEK, ALL_CATEGORIES), categoryBoard(WINDOW_WEEK, counter),
+            counter.sum(nowHour, WINDOW_SLOTS), counter);
+        offerAll(board(WINDOW_ALL, ALL_CATEGORIES), categoryBoard(WINDOW_ALL, counter),
+            counter.allTime(), counter);
+    }
+
+    private void offerAll(TopK overall, TopK perCategory, long units, Counter counter) {
+        if (units > 0) {
+            overall.offer(counter, units);
+            if (perCategory != null) {
+                perCategory.offer(counter, units);
+            }
+        }
+    }
+
+    private TopK categoryBoard(String window, Counter counter) {
+        return counter.category == null ? null : board(window, counter.category);
+    }
+
+    private TopK board(String window, String category) {
+        return boards.computeIfAbsent(window, w -> new ConcurrentHashMap<>())
+            .computeIfAbsent(category, c -> new TopK());
+    }
+
+    private void rebuildBoards(long nowHour) {
+        Map<String, Map<String, TopK>> fresh = new HashMap<>();
+        for (String window : new String[] { WINDOW_DAY, WINDOW_WEEK, WINDOW_ALL }) {
+            fresh.put(window, new ConcurrentHashMap<>());
+        }
+        for (Counter counter : counters.values()) {
+            for (Map.Entry<String, Map<String, TopK>> entry : fresh.entrySet()) {
+                String window = entry.getKey();
+                long units = WINDOW_ALL.equals(window) ? counter.allTime()
+                    : counter.sum(nowHour, WINDOW_DAY.equals(window) ? 24 : WINDOW_SLOTS);
+                TopK overall = entry.getValue().computeIfAbsent(ALL_CATEGORIES, c -> new TopK());
+                TopK perCategory = counter.category == null ? null
+                    : entry.getValue().computeIfAbsent(counter.category, c -> new TopK());
+                offerAll(overall, perCategory, units, counter);
+            }
+        }
+        boards.putAll(fresh);
+        boardsHour = nowHour;
+    }
+
+    private static long currentHour() {
+        return System.currentTimeMillis() / HOUR_MILLIS;
+    }
+}
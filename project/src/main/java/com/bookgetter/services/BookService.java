@@ -2,19 +2,43 @@ package com.bookgetter.services;
 
 import com.bookgetter.models.Book;
 import com.bookgetter.utils.FileUtil;
+import com.bookgetter.utils.IsbnUtil;
 import com.bookgetter.utils.JsonUtil;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
 
+/**
+ * The catalog, published as immutable {@link CatalogSnapshot}s through one volatile
+ * reference. Reads never lock and always see a whole version. Writers are serialized; each
+ * builds the next version from a copy, persists it, and swaps the reference.
+ */
 public class BookService {
     private static final String BOOKS_FILE = "books.json";
     private static BookService instance;
 
+    private volatile CatalogSnapshot snapshot;
+    public static final String SORT_PRICE_ASC = "price_asc";
+    public static final String SORT_PRICE_DESC = "price_desc";
+    public static final int MAX_EDITS = 3;
+    public static final int MAX_ISBN_BATCH = 1000;
+
+    public static final String STORE_OBJECTS = "objects";
+    public static final String STORE_COLUMNAR = "columnar";
+    public static final String STORE_OFFHEAP = "offheap";
+
+    private volatile String storeKind = STORE_OBJECTS;
+    private final SearchCache searchCache = new SearchCache();
+    private final CatalogChangeLog changeLog = new CatalogChangeLog();
+
     private BookService() {}
 
     public static synchronized BookService getInstance() {
@@ -24,11 +48,7 @@ public class BookService {
         return instance;
     }
 
-    private List<Book> loadBooks() throws IOException {
-        if (!FileUtil.fileExists(BOOKS_FILE)) {
-            return new ArrayList<>();
-        }
-        String json = FileUtil.readFile(BOOKS_FILE);
+    private List<Book> parseBooks(String json) {
         if (json == null || json.trim().isEmpty()) {
             return new ArrayList<>();
         }
@@ -36,73 +56,428 @@ public class BookService {
         return JsonUtil.fromJson(json, listType);
     }
 
-    private void saveBooks(List<Book> books) throws IOException {
+    /** Returns what was written, so the off-heap store can stamp catalog.bin with it. */
+    private String saveBooks(List<Book> books) throws IOException {
         String json = JsonUtil.toJson(books);
         FileUtil.writeFile(BOOKS_FILE, json);
+        return json;
+    }
+
+    /**
+     * The current catalog version. Callers that need several consistent reads should take
+     * one snapshot and use it throughout. Version numbers start at the load time in
+     * milliseconds, so a version seen before a restart is always older than the new ones.
+     */
+    public CatalogSnapshot getSnapshot() throws IOException {
+        CatalogSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                String json = FileUtil.readFile(BOOKS_FILE);
+                CatalogStore store = STORE_OFFHEAP.equals(storeKind) ? OffHeapCatalogStore.openIfCurrent(json) : null;
+                long version = System.currentTimeMillis();
+                changeLog.reset(version);
+                snapshot = new CatalogSnapshot(version, store != null ? store : storeFor(parseBooks(json), json));
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Persist the next version of the book list and publish it. Callers hold the lock,
+     * build {@code books} from a copy of the current snapshot, and never modify a Book
+     * that is already published. The change is logged before the version becomes visible.
+     */
+    private void publish(CatalogSnapshot current, List<Book> books, String bookId, String op) throws IOException {
+        String json = saveBooks(books);
+        CatalogStore store = storeFor(books, json);
+        changeLog.record(current.getVersion() + 1, bookId, op);
+        snapshot = new CatalogSnapshot(current.getVersion() + 1, store);
+    }
+
+    /**
+     * As {@link #publish}, for a version that differs from the current one only in the
+     * stock of some rows. The store shares everything else with the current one, and
+     * books.json is written from it row by row without copying the catalog first.
+     */
+    private CatalogSnapshot publishStock(CatalogSnapshot current, int[] rows, int[] stocks, List<String> bookIds)
+            throws IOException {
+        CatalogStore store = current.getStore().withStocks(rows, stocks);
+        CatalogSnapshot next = new CatalogSnapshot(current.getVersion() + 1, store, current);
+        String json = saveBooks(next.getBooks());
+        if (store instanceof OffHeapCatalogStore) {
+            ((OffHeapCatalogStore) store).saveStocks((OffHeapCatalogStore) current.getStore(), rows, json);
+        }
+        for (String bookId : bookIds) {
+            changeLog.record(next.getVersion(), bookId, CatalogChangeLog.UPDATED);
+        }
+        snapshot = next;
+        return next;
+    }
+
+    /**
+     * What changed after catalog version {@code since}, for clients that mirror the catalog:
+     * "version" (the current one), "full" false, the added or changed "books" and the ids
+     * of "deleted" books. If the change log no longer reaches back that far, or the
+     * version is unknown, "full" is true and "books" is the whole catalog instead.
+     */
+    public Map<String, Object> getChangesSince(long since) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        Map<String, String> changes = changeLog.changes(since, current.getVersion());
+        Map<String, Object> result = new HashMap<>();
+        result.put("version", current.getVersion());
+        if (changes == null) {
+            result.put("full", true);
+            result.put("books", current.getBooks());
+            return result;
+        }
+        List<Book> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (String bookId : changes.keySet()) {
+            Book book = current.getBook(bookId);
+            if (book == null) {
+                deleted.add(bookId);
+            } else {
+                changed.add(book);
+            }
+        }
+        result.put("full", false);
+        result.put("books", changed);
+        result.put("deleted", deleted);
+        return result;
+    }
+
+    /** @param json the books.json content {@code books} came from or were saved as */
+    private CatalogStore storeFor(List<Book> books, String json) throws IOException {
+        switch (storeKind) {
+            case STORE_COLUMNAR:
+                return new ColumnarCatalogStore(books);
+            case STORE_OFFHEAP:
+                return OffHeapCatalogStore.build(books, json);
+            default:
+                return new ObjectCatalogStore(books);
+        }
+    }
+
+    /**
+     * Choose how the catalog is held in memory: {@link #STORE_OBJECTS} (one object per
+     * book), {@link #STORE_COLUMNAR} (compact on-heap columns) or {@link #STORE_OFFHEAP}
+     * (records outside the heap, reopened from data/catalog.bin on restart). Takes effect
+     * immediately by rebuilding the current version.
+     */
+    public synchronized void setCatalogStore(String kind) throws IOException {
+        if (!STORE_OBJECTS.equals(kind) && !STORE_COLUMNAR.equals(kind) && !STORE_OFFHEAP.equals(kind)) {
+            throw new IllegalArgumentException("Unknown catalog store: " + kind);
+        }
+        this.storeKind = kind;
+        CatalogSnapshot current = snapshot;
+        if (current != null) {
+            snapshot = new CatalogSnapshot(current.getVersion(), storeFor(new ArrayList<>(current.getBooks()),
+                FileUtil.readFile(BOOKS_FILE)));
+        }
     }
 
     public List<Book> getAllBooks() throws IOException {
-        return loadBooks();
+        return getSnapshot().getBooks();
     }
 
     public Book getBookById(String bookId) throws IOException {
-        List<Book> books = loadBooks();
-        return books.stream()
-            .filter(b -> b.getId().equals(bookId))
-            .findFirst()
-            .orElse(null);
+        return getSnapshot().getBook(bookId);
     }
 
     public List<Book> searchBooks(String query) throws IOException {
-        List<Book> books = loadBooks();
-        String lowerQuery = query.toLowerCase();
-        return books.stream()
-            .filter(b -> b.getTitle().toLowerCase().contains(lowerQuery) ||
-                        b.getAuthor().toLowerCase().contains(lowerQuery) ||
-                        b.getCategory().toLowerCase().contains(lowerQuery))
-            .collect(Collectors.toList());
+        return queryBooks(query, null, null, null, false, null);
     }
 
     public List<Book> getBooksByCategory(String category) throws IOException {
-        List<Book> books = loadBooks();
-        return books.stream()
-            .filter(b -> b.getCategory().equalsIgnoreCase(category))
-            .collect(Collectors.toList());
+        return getSnapshot().getBooksByCategory(category);
+    }
+
+    /**
+     * Books matching every given filter (null means "any"). Each filter selects a bitset of
+     * rows from the snapshot's indexes and the text search only scans what is left.
+     * @param search text contained in the title, author or category
+     * @param category exact category, case-insensitive
+     * @param minPrice inclusive lower price bound
+     * @param maxPrice inclusive upper price bound
+     * @param inStockOnly only books with stock left
+     * @param sort {@link #SORT_PRICE_ASC}, {@link #SORT_PRICE_DESC}, or null for catalog order
+     */
+    public List<Book> queryBooks(String search, String category, Double minPrice, Double maxPrice,
+                                 boolean inStockOnly, String sort) throws IOException {
+        return queryBooks(search, category, minPrice, maxPrice, inStockOnly, sort, 0);
+    }
+
+    /**
+     * As {@link #queryBooks(String, String, Double, Double, boolean, String)}, but with
+     * {@code maxEdits} above zero the search also tolerates typos: every search word may
+     * be up to that many edits away from a word of the title or author. Exact matches come
+     * first, then the books in order of edits needed; the sort applies within each group.
+     */
+    public List<Book> queryBooks(String search, String category, Double minPrice, Double maxPrice,
+                                 boolean inStockOnly, String sort, int maxEdits) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        return current.getBooks(query(current, search, category, minPrice, maxPrice, inStockOnly, sort, maxEdits,
+            false).rows);
+    }
+
+    /**
+     * {@link #queryBooks} plus facet counts over the same hits: books per category, price
+     * band and author, and in stock vs out of stock. Each count intersects a precomputed
+     * facet bitset with the result bitset, so no second pass over the books is needed.
+     * @return "books", "total" and "facets"
+     */
+    public Map<String, Object> queryBooksWithFacets(String search, String category, Double minPrice,
+                                                    Double maxPrice, boolean inStockOnly, String sort,
+                                                    int maxEdits) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        SearchCache.Result hits = query(current, search, category, minPrice, maxPrice, inStockOnly, sort, maxEdits,
+            true);
+        Map<String, Object> result = new HashMap<>();
+        result.put("books", current.getBooks(hits.rows));
+        result.put("total", hits.total);
+        result.put("facets", hits.facets);
+        return result;
+    }
+
+    /** Hit rate and size of the query result cache, for the admin API. */
+    public Map<String, Object> getSearchCacheStats() {
+        return searchCache.getStats();
     }
 
-    public Book addBook(Book book) throws IOException {
-        List<Book> books = loadBooks();
-        books.add(book);
-        saveBooks(books);
+    /**
+     * A user-supplied filter as part of a cache key: "-" when absent, otherwise its length
+     * and lower-cased text, so no text can pass for another filter or for none.
+     */
+    private static String keyPart(String text) {
+        if (text == null) {
+            return "-";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        return lower.length() + ":" + lower;
+    }
+
+    /**
+     * Run a query against one snapshot, or take its result from the cache. Results that
+     * depend on stock (the in-stock filter, facet counts) are only reused within the same
+     * version. All others survive stock changes, which leave rows and prices as they were.
+     */
+    private SearchCache.Result query(CatalogSnapshot current, String search, String category, Double minPrice,
+                                     Double maxPrice, boolean inStockOnly, String sort, int maxEdits,
+                                     boolean withFacets) {
+        int byPrice = priceOrder(sort);
+        if (search != null) {
+            search = search.trim().replaceAll("\\s+", " ");
+        }
+        String key = keyPart(search) + keyPart(category) + minPrice + "|" + maxPrice + "|" + inStockOnly + "|"
+            + byPrice + "|" + maxEdits + "|" + withFacets;
+        long version = inStockOnly || withFacets ? current.getVersion() : current.getLayoutVersion();
+        SearchCache.Result cached = searchCache.get(key, version);
+        if (cached != null) {
+            return cached;
+        }
+
+        CatalogIndex index = current.getIndex();
+        BitSet[] tiers = select(index, search, category, minPrice, maxPrice, inStockOnly, maxEdits);
+        BitSet rows = tiers[0];
+        if (tiers.length > 1) {
+            rows = new BitSet();
+            for (BitSet tier : tiers) {
+                rows.or(tier);
+            }
+        }
+        SearchCache.Result result = new SearchCache.Result(version, order(index, tiers, byPrice),
+            rows.cardinality(), withFacets ? index.facetCounts(rows) : null);
+        searchCache.put(key, result);
+        return result;
+    }
+
+    private static int priceOrder(String sort) {
+        if (sort == null) {
+            return 0;
+        } else if (SORT_PRICE_ASC.equals(sort)) {
+            return 1;
+        } else if (SORT_PRICE_DESC.equals(sort)) {
+            return -1;
+        }
+        throw new IllegalArgumentException("Unknown sort: " + sort);
+    }
+
+    /** The matching rows, split into tiers by how well they match the search (best first). */
+    private static BitSet[] select(CatalogIndex index, String search, String category, Double minPrice,
+                                   Double maxPrice, boolean inStockOnly, int maxEdits) {
+        if (maxEdits < 0 || maxEdits > MAX_EDITS) {
+            throw new IllegalArgumentException("maxEdits must be between 0 and " + MAX_EDITS);
+        }
+        BitSet rows = category != null ? index.category(category) : index.all();
+        if (minPrice != null || maxPrice != null) {
+            rows.and(index.priceRange(minPrice, maxPrice));
+        }
+        if (inStockOnly) {
+            rows.and(index.inStock());
+        }
+        if (search == null) {
+            return new BitSet[] {rows};
+        }
+        if (maxEdits == 0) {
+            return new BitSet[] {index.matching(search, rows)};
+        }
+        return index.fuzzyMatching(search, rows, maxEdits);
+    }
+
+    private static int[] order(CatalogIndex index, BitSet[] tiers, int byPrice) {
+        if (tiers.length == 1) {
+            return index.order(tiers[0], byPrice);
+        }
+        int[][] ordered = new int[tiers.length][];
+        int total = 0;
+        for (int i = 0; i < tiers.length; i++) {
+            ordered[i] = index.order(tiers[i], byPrice);
+            total += ordered[i].length;
+        }
+        int[] rows = new int[total];
+        int n = 0;
+        for (int[] tier : ordered) {
+            System.arraycopy(tier, 0, rows, n, tier.length);
+            n += tier.length;
+        }
+        return rows;
+    }
+
+    /**
+     * Resolve a batch of ISBNs, written as ISBN-10 or ISBN-13 with or without hyphens.
+     * @return one entry per requested ISBN, in order: "isbn" as given and "book" (null if
+     *         no book has it)
+     */
+    public List<Map<String, Object>> lookupIsbns(List<String> isbns) throws IOException {
+        if (isbns == null || isbns.isEmpty()) {
+            throw new IllegalArgumentException("No ISBNs given");
+        }
+        if (isbns.size() > MAX_ISBN_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_ISBN_BATCH + " ISBNs per request");
+        }
+        String[] normalized = new String[isbns.size()];
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = IsbnUtil.normalize(isbns.get(i));
+        }
+        CatalogSnapshot current = getSnapshot();
+        int[][] rows = current.getIndex().isbns().lookup(normalized);
+        List<Map<String, Object>> result = new ArrayList<>(isbns.size());
+        for (int i = 0; i < rows.length; i++) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("isbn", isbns.get(i));
+            entry.put("book", rows[i].length == 0 ? null : current.getStore().get(rows[i][0]));
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /** Reject a book whose ISBN another book already has. */
+    private static void checkIsbnUnique(CatalogSnapshot current, Book book) {
+        String isbn = IsbnUtil.normalize(book.getIsbn());
+        if (isbn == null) {
+            return;
+        }
+        CatalogStore store = current.getStore();
+        for (int row : current.getIndex().isbns().rowsOf(isbn)) {
+            if (row != store.rowOf(book.getId())) {
+                throw new IllegalArgumentException("ISBN " + book.getIsbn() + " is already used by \""
+                    + store.title(row) + "\"");
+            }
+        }
+    }
+
+    public synchronized Book addBook(Book book) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        checkIsbnUnique(current, book);
+        List<Book> books = new ArrayList<>(current.getBooks());
+        books.add(new Book(book));
+        publish(current, books, book.getId(), CatalogChangeLog.ADDED);
+        DashboardStats.getInstance().onBookAdded();
+        InventoryService.getInstance().onStockChanged(book.getId(), book.getStock());
+        SuggestService.getInstance().onBookAdded(new Book(book));
         return book;
     }
 
-    public Book updateBook(Book book) throws IOException {
-        List<Book> books = loadBooks();
+    public synchronized Book updateBook(Book book) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        checkIsbnUnique(current, book);
+        List<Book> books = new ArrayList<>(current.getBooks());
         for (int i = 0; i < books.size(); i++) {
             if (books.get(i).getId().equals(book.getId())) {
-                books.set(i, book);
-                saveBooks(books);
+                Book previous = books.get(i);
+                books.set(i, new Book(book));
+                publish(current, books, book.getId(), CatalogChangeLog.UPDATED);
+                if (previous.getStock() != book.getStock() || previous.getPrice() != book.getPrice()) {
+                    StockFeed.getInstance().publish(current.getVersion() + 1, book);
+                }
+                InventoryService.getInstance().onStockChanged(book.getId(), book.getStock());
+                SuggestService.getInstance().onBookUpdated(new Book(book));
                 return book;
             }
         }
         throw new IllegalArgumentException("Book not found");
     }
 
-    public void deleteBook(String bookId) throws IOException {
-        List<Book> books = loadBooks();
-        books.removeIf(b -> b.getId().equals(bookId));
-        saveBooks(books);
+    public synchronized void deleteBook(String bookId) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        List<Book> books = new ArrayList<>(current.getBooks());
+        if (books.removeIf(b -> b.getId().equals(bookId))) {
+            publish(current, books, bookId, CatalogChangeLog.DELETED);
+            DashboardStats.getInstance().onBookDeleted();
+            InventoryService.getInstance().onBookDeleted(bookId);
+            SuggestService.getInstance().onBookDeleted(bookId);
+        }
+    }
+
+    /**
+     * Set the stock of several books with a single write.
+     * @param stockByBookId book id to the new absolute stock level
+     */
+    public synchronized void setStocks(Map<String, Integer> stockByBookId) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        CatalogStore store = current.getStore();
+        int[] rows = new int[stockByBookId.size()];
+        int[] stocks = new int[rows.length];
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : stockByBookId.entrySet()) {
+            int row = store.rowOf(entry.getKey());
+            if (row >= 0 && entry.getValue() != null) {
+                rows[changed.size()] = row;
+                stocks[changed.size()] = entry.getValue();
+                changed.add(entry.getKey());
+            }
+        }
+        if (!changed.isEmpty()) {
+            CatalogSnapshot next = publishStock(current, Arrays.copyOf(rows, changed.size()),
+                Arrays.copyOf(stocks, changed.size()), changed);
+            for (String bookId : changed) {
+                StockFeed.getInstance().publish(next.getVersion(), next.getBook(bookId));
+            }
+        }
+    }
+
+    public synchronized void updateStock(String bookId, int quantity) throws IOException {
+        Map<String, Integer> sold = new HashMap<>();
+        sold.put(bookId, quantity);
+        takeStocks(sold);
     }
 
-    public void updateStock(String bookId, int quantity) throws IOException {
-        List<Book> books = loadBooks();
-        for (Book book : books) {
-            if (book.getId().equals(bookId)) {
-                book.setStock(book.getStock() - quantity);
-                saveBooks(books);
-                return;
+    /**
+     * Take quantities off the current stock of several books with a single write. Books
+     * that no longer exist are skipped.
+     */
+    public synchronized void takeStocks(Map<String, Integer> quantityByBookId) throws IOException {
+        CatalogSnapshot current = getSnapshot();
+        Map<String, Integer> stock = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : quantityByBookId.entrySet()) {
+            Book book = current.getBook(entry.getKey());
+            if (book != null) {
+                stock.put(entry.getKey(), book.getStock() - entry.getValue());
             }
         }
+        setStocks(stock);
     }
 }
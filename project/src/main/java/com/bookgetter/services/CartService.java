@@ -10,12 +10,16 @@ import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CartService {
     private static final String CARTS_FILE = "carts.json";
     private static CartService instance;
-    private BookService bookService = BookService.getInstance();
+    private InventoryService inventory = InventoryService.getInstance();
+    /** Item count and total per user with a cart, rebuilt on first use after each write. */
+    private volatile Map<String, Map<String, Object>> summaries;
 
     private CartService() {}
 
@@ -41,8 +45,17 @@ public class CartService {
     private void saveCarts(List<Cart> carts) throws IOException {
         String json = JsonUtil.toJson(carts);
         FileUtil.writeFile(CARTS_FILE, json);
+        summaries = null;
     }
 
+    public List<Cart> getAllCarts() throws IOException {
+        return loadCarts();
+    }
+
+    /**
+     * The user's cart, or a new empty one. An empty cart is only returned, never stored;
+     * carts.json holds carts that have items.
+     */
     public Cart getOrCreateCart(String userId) throws IOException {
         List<Cart> carts = loadCarts();
         Cart cart = carts.stream()
@@ -52,24 +65,53 @@ public class CartService {
 
         if (cart == null) {
             cart = new Cart(userId);
-            carts.add(cart);
-            saveCarts(carts);
         }
 
         enrichCartWithStock(cart);
         return cart;
     }
 
+    /**
+     * What the cart badge needs: "itemCount" (books, counting quantities) and "totalAmount".
+     * Answered from memory; carts.json is only read again after a cart has changed.
+     */
+    public Map<String, Object> getCartSummary(String userId) throws IOException {
+        Map<String, Map<String, Object>> current = summaries;
+        if (current == null) {
+            current = buildSummaries();
+        }
+        Map<String, Object> summary = current.get(userId);
+        if (summary == null) {
+            summary = new HashMap<>();
+            summary.put("itemCount", 0);
+            summary.put("totalAmount", 0.0);
+        }
+        return new HashMap<>(summary);
+    }
+
+    /** Writers hold the same lock, so a build never publishes summaries of an older file. */
+    private synchronized Map<String, Map<String, Object>> buildSummaries() throws IOException {
+        Map<String, Map<String, Object>> built = summaries;
+        if (built == null) {
+            built = new HashMap<>();
+            for (Cart cart : loadCarts()) {
+                Map<String, Object> summary = new HashMap<>();
+                summary.put("itemCount", cart.getItems().stream().mapToInt(CartItem::getQuantity).sum());
+                summary.put("totalAmount", cart.getTotalAmount());
+                built.put(cart.getUserId(), summary);
+            }
+            summaries = built;
+        }
+        return built;
+    }
+
     private void enrichCartWithStock(Cart cart) throws IOException {
         for (CartItem item : cart.getItems()) {
-            Book book = bookService.getBookById(item.getBookId());
-            if (book != null) {
-                item.setAvailableStock(book.getStock());
-            }
+            item.setAvailableStock(inventory.availableTo(cart.getUserId(), item.getBookId()));
         }
     }
 
-    public Cart addToCart(String userId, Book book, int quantity) throws IOException {
+    public synchronized Cart addToCart(String userId, Book book, int quantity) throws IOException {
         List<Cart> carts = loadCarts();
         Cart cart = carts.stream()
             .filter(c -> c.getUserId().equals(userId))
@@ -86,9 +128,13 @@ public class CartService {
             .findFirst()
             .orElse(null);
 
+        int previousQuantity = existingItem != null ? existingItem.getQuantity() : 0;
+        if (!inventory.hold(userId, book.getId(), previousQuantity + quantity)) {
+            throw new IllegalArgumentException("Insufficient stock");
+        }
+
         if (existingItem != null) {
-            existingItem.setQuantity(existingItem.getQuantity() + quantity);
-            existingItem.setAvailableStock(book.getStock());
+            existingItem.setQuantity(previousQuantity + quantity);
         } else {
             CartItem newItem = new CartItem(
                 book.getId(),
@@ -108,7 +154,7 @@ public class CartService {
         return cart;
     }
 
-    public Cart updateCartItem(String userId, String bookId, int quantity) throws IOException {
+    public synchronized Cart updateCartItem(String userId, String bookId, int quantity) throws IOException {
         List<Cart> carts = loadCarts();
         Cart cart = carts.stream()
             .filter(c -> c.getUserId().equals(userId))
@@ -120,34 +166,77 @@ public class CartService {
         }
 
         if (quantity <= 0) {
-            cart.getItems().removeIf(item -> item.getBookId().equals(bookId));
+            if (cart.getItems().removeIf(item -> item.getBookId().equals(bookId))) {
+                inventory.release(userId, bookId);
+            }
         } else {
             CartItem item = cart.getItems().stream()
                 .filter(i -> i.getBookId().equals(bookId))
                 .findFirst()
                 .orElse(null);
             if (item != null) {
+                if (!inventory.hold(userId, bookId, quantity)) {
+                    throw new IllegalArgumentException("Cannot add more items. Only "
+                        + inventory.availableTo(userId, bookId) + " remaining in stock.");
+                }
                 item.setQuantity(quantity);
             }
         }
 
         cart.setUpdatedAt(System.currentTimeMillis());
+        if (cart.getItems().isEmpty()) {
+            carts.remove(cart);
+        }
         saveCarts(carts);
         enrichCartWithStock(cart);
         return cart;
     }
 
-    public void clearCart(String userId) throws IOException {
+    public synchronized void clearCart(String userId) throws IOException {
+        clearCartUnchangedSince(userId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Clear the user's cart unless it was changed after {@code since}.
+     */
+    public synchronized void clearCartUnchangedSince(String userId, long since) throws IOException {
         List<Cart> carts = loadCarts();
         Cart cart = carts.stream()
             .filter(c -> c.getUserId().equals(userId))
             .findFirst()
             .orElse(null);
 
-        if (cart != null) {
-            cart.getItems().clear();
-            cart.setUpdatedAt(System.currentTimeMillis());
+        if (cart != null && cart.getUpdatedAt() <= since) {
+            for (CartItem item : cart.getItems()) {
+                inventory.release(userId, item.getBookId());
+            }
+            carts.remove(cart);
             saveCarts(carts);
         }
     }
+
+    /**
+     * Drop empty carts and carts nobody has changed for {@code idleMillis}, releasing
+     * whatever stock the abandoned ones still hold.
+     * @return number of carts removed
+     */
+    public synchronized int evictIdleCarts(long idleMillis) throws IOException {
+        List<Cart> carts = loadCarts();
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        List<Cart> kept = new ArrayList<>(carts.size());
+        for (Cart cart : carts) {
+            if (!cart.getItems().isEmpty() && cart.getUpdatedAt() >= cutoff) {
+                kept.add(cart);
+                continue;
+            }
+            for (CartItem item : cart.getItems()) {
+                inventory.release(cart.getUserId(), item.getBookId());
+            }
+        }
+        int removed = carts.size() - kept.size();
+        if (removed > 0) {
+            saveCarts(kept);
+        }
+        return removed;
+    }
 }
@@ -0,0 +1,63 @@
+package com.bookgetter.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The most recent catalog changes as (version, book id, operation), in a fixed-size ring.
+ * Once the ring overwrites an entry, versions up to that entry's can no longer be
+ * answered, and callers fall back to a full copy of the catalog.
+ */
+class CatalogChangeLog {
+    static final String ADDED = "added";
+    static final String UPDATED = "updated";
+    static final String DELETED = "deleted";
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final long[] versions = new long[MAX_ENTRIES];
+    private final String[] bookIds = new String[MAX_ENTRIES];
+    private final String[] ops = new String[MAX_ENTRIES];
+    private int first;
+    private int size;
+    /** Every change after this version is still in the log. */
+    private long completeAfter;
+
+    synchronized void reset(long version) {
+        first = 0;
+        size = 0;
+        completeAfter = version;
+    }
+
+    synchronized void record(long version, String bookId, String op) {
+        if (size == MAX_ENTRIES) {
+            completeAfter = Math.max(completeAfter, versions[first]);
+            first = (first + 1) % MAX_ENTRIES;
+            size--;
+        }
+        int slot = (first + size) % MAX_ENTRIES;
+        versions[slot] = version;
+        bookIds[slot] = bookId;
+        ops[slot] = op;
+        size++;
+    }
+
+    /**
+     * The last operation on each book changed after {@code since} and up to {@code upTo},
+     * in the order they last changed, or null if the log no longer reaches back that far.
+     */
+    synchronized Map<String, String> changes(long since, long upTo) {
+        if (since < completeAfter || since > upTo) {
+            return null;
+        }
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            int slot = (first + i) % MAX_ENTRIES;
+            if (versions[slot] > since && versions[slot] <= upTo) {
+                changes.remove(bookIds[slot]);
+                changes.put(bookIds[slot], ops[slot]);
+            }
+        }
+        return changes;
+    }
+}
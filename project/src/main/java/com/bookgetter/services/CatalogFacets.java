@@ -0,0 +1,164 @@
+package com.bookgetter.services;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Facet bitsets for one catalog layout: one per category, price band and prolific author,
+ * kept as raw words. A facet count is the popcount of its words ANDed with the query
+ * result's, so counting costs one pass over a few words per facet value no matter how
+ * many books matched.
+ * <p>
+ * A large catalog has far too many authors to give each one a bitset, so only the
+ * {@value #AUTHOR_BITSETS} with the most titles get one. Results of up to
+ * {@value #AUTHOR_SCAN_LIMIT} rows count their authors by scanning the hits instead, which
+ * also covers the long tail. The facets do not depend on stock, so a stock-only change
+ * reuses them.
+ */
+final class CatalogFacets {
+    /** Upper bounds of the price bands; the last band is open-ended. */
+    private static final int[] PRICE_BANDS = {25, 50, 100, 200};
+    private static final int AUTHOR_BITSETS = 100;
+    private static final int AUTHOR_SCAN_LIMIT = 10000;
+    private static final int TOP_AUTHORS = 20;
+
+    private final Map<String, long[]> categories = new LinkedHashMap<>();
+    private final Map<String, long[]> priceBands = new LinkedHashMap<>();
+    private final Map<String, long[]> authors = new LinkedHashMap<>();
+
+    CatalogFacets(CatalogStore store) {
+        int size = store.size();
+        Map<String, String> categoryNames = new LinkedHashMap<>();
+        Map<String, BitSet> categoryRows = new HashMap<>();
+        BitSet[] bandRows = new BitSet[PRICE_BANDS.length + 1];
+        for (int band = 0; band < bandRows.length; band++) {
+            bandRows[band] = new BitSet(size);
+        }
+        Map<String, Integer> authorTitles = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            String category = store.category(row);
+            if (category != null) {
+                String key = ObjectCatalogStore.categoryKey(category);
+                categoryNames.putIfAbsent(key, category);
+                categoryRows.computeIfAbsent(key, c -> new BitSet(size)).set(row);
+            }
+            bandRows[bandOf(store.price(row))].set(row);
+            String author = store.author(row);
+            if (author != null) {
+                authorTitles.merge(author, 1, Integer::sum);
+            }
+        }
+
+        Set<String> prolific = top(authorTitles, AUTHOR_BITSETS).keySet();
+        Map<String, BitSet> authorRows = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            String author = store.author(row);
+            if (author != null && prolific.contains(author)) {
+                authorRows.computeIfAbsent(author, a -> new BitSet(size)).set(row);
+            }
+        }
+
+        for (Map.Entry<String, String> entry : categoryNames.entrySet()) {
+            categories.put(entry.getValue(), categoryRows.get(entry.getKey()).toLongArray());
+        }
+        for (int band = 0; band < bandRows.length; band++) {
+            priceBands.put(bandLabel(band), bandRows[band].toLongArray());
+        }
+        for (Map.Entry<String, BitSet> entry : authorRows.entrySet()) {
+            authors.put(entry.getKey(), entry.getValue().toLongArray());
+        }
+    }
+
+    /**
+     * Facet counts within {@code rows}: categories and authors with at least one hit, most
+     * hits first, every price band in order, and in stock vs out of stock.
+     */
+    Map<String, Object> count(BitSet rows, long[] inStock, CatalogStore store) {
+        long[] words = rows.toLongArray();
+        int total = rows.cardinality();
+
+        Map<String, Integer> categoryCounts = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : categories.entrySet()) {
+            categoryCounts.put(entry.getKey(), intersection(words, entry.getValue()));
+        }
+
+        Map<String, Integer> bandCounts = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> entry : priceBands.entrySet()) {
+            bandCounts.put(entry.getKey(), intersection(words, entry.getValue()));
+        }
+
+        Map<String, Integer> authorCounts = new HashMap<>();
+        if (total <= AUTHOR_SCAN_LIMIT) {
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                String author = store.author(row);
+                if (author != null) {
+                    authorCounts.merge(author, 1, Integer::sum);
+                }
+            }
+        } else {
+            for (Map.Entry<String, long[]> entry : authors.entrySet()) {
+                authorCounts.put(entry.getKey(), intersection(words, entry.getValue()));
+            }
+        }
+
+        int inStockCount = intersection(words, inStock);
+        Map<String, Integer> stockCounts = new LinkedHashMap<>();
+        stockCounts.put("inStock", inStockCount);
+        stockCounts.put("outOfStock", total - inStockCount);
+
+        Map<String, Object> facets = new LinkedHashMap<>();
+        facets.put("category", top(categoryCounts, Integer.MAX_VALUE));
+        facets.put("price", bandCounts);
+        facets.put("author", top(authorCounts, TOP_AUTHORS));
+        facets.put("stock", stockCounts);
+        return facets;
+    }
+
+    private static int intersection(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0, n = Math.min(a.length, b.length); i < n; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+
+    /** The {@code limit} largest non-zero counts, largest first, ties by name. */
+    private static Map<String, Integer> top(Map<String, Integer> counts, int limit) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 0) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Integer> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    private static int bandOf(double price) {
+        int band = 0;
+        while (band < PRICE_BANDS.length && price >= PRICE_BANDS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    private static String bandLabel(int band) {
+        if (band == PRICE_BANDS.length) {
+            return PRICE_BANDS[band - 1] + "+";
+        }
+        return (band == 0 ? 0 : PRICE_BANDS[band - 1]) + "-" + PRICE_BANDS[band];
+    }
+}
@@ -0,0 +1,236 @@
+package com.bookgetter.services;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Filter indexes derived from one catalog version: rows sorted by price (for range
+ * lookups by binary search and price-ordered listing) and a bitset of rows in stock.
+ * Every filter produces a BitSet of rows, and filters combine by intersection. Facet
+ * bitsets, the word index for fuzzy search and the ISBN index are built on first use.
+ */
+class CatalogIndex {
+    private final CatalogStore store;
+    private final int[] rowsByPrice;
+    private final double[] sortedPrices;
+    private final BitSet inStock;
+    private final long[] inStockWords;
+    private volatile CatalogFacets facets;
+    private volatile TermIndex terms;
+    private volatile IsbnIndex isbns;
+
+    CatalogIndex(CatalogStore store) {
+        this.store = store;
+        int size = store.size();
+        rowsByPrice = IntStream.range(0, size).boxed()
+            .sorted(Comparator.comparingDouble(store::price))
+            .mapToInt(Integer::intValue)
+            .toArray();
+        sortedPrices = new double[size];
+        for (int i = 0; i < size; i++) {
+            sortedPrices[i] = store.price(rowsByPrice[i]);
+        }
+        inStock = stockedRows(store);
+        inStockWords = inStock.toLongArray();
+    }
+
+    private CatalogIndex(CatalogStore store, CatalogIndex sameRows) {
+        this.store = store;
+        this.rowsByPrice = sameRows.rowsByPrice;
+        this.sortedPrices = sameRows.sortedPrices;
+        this.facets = sameRows.facets;
+        this.terms = sameRows.terms;
+        this.isbns = sameRows.isbns;
+        this.inStock = stockedRows(store);
+        this.inStockWords = inStock.toLongArray();
+    }
+
+    /**
+     * The index of a store that differs from this one only in stock levels. The price
+     * order, facets, word index and ISBN index are shared; only the in-stock bitset is rebuilt.
+     */
+    CatalogIndex withStock(CatalogStore store) {
+        return new CatalogIndex(store, this);
+    }
+
+    private static BitSet stockedRows(CatalogStore store) {
+        BitSet rows = new BitSet(store.size());
+        for (int row = 0; row < store.size(); row++) {
+            if (store.stock(row) > 0) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    BitSet all() {
+        BitSet rows = new BitSet(store.size());
+        rows.set(0, store.size());
+        return rows;
+    }
+
+    BitSet inStock() {
+        return (BitSet) inStock.clone();
+    }
+
+    BitSet category(String category) {
+        BitSet rows = new BitSet(store.size());
+        for (int row : store.rowsInCategory(category)) {
+            rows.set(row);
+        }
+        return rows;
+    }
+
+    /** Rows priced within [min, max]; either bound may be null. */
+    BitSet priceRange(Double min, Double max) {
+        int from = min == null ? 0 : lowerBound(min);
+        int to = max == null ? sortedPrices.length : upperBound(max);
+        BitSet rows = new BitSet(store.size());
+        for (int i = from; i < to; i++) {
+            rows.set(rowsByPrice[i]);
+        }
+        return rows;
+    }
+
+    /** Rows among {@code candidates} whose title, author or category contains the text. */
+    BitSet matching(String text, BitSet candidates) {
+        String lowerText = text.toLowerCase();
+        BitSet rows = new BitSet(store.size());
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            if (contains(store.title(row), lowerText) || contains(store.author(row), lowerText)
+                    || contains(store.category(row), lowerText)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Rows among {@code candidates} that match {@code text} despite typos, in tiers. Tier 0
+     * holds what {@link #matching} finds plus exact word matches. Tier d holds the rows
+     * whose worst-matched query word is d edits from a title or author word. Every query
+     * word has to match. A word may be off by at most one edit per three letters, so
+     * short words like "cat" do not match every other short word.
+     */
+    BitSet[] fuzzyMatching(String text, BitSet candidates, int maxEdits) {
+        BitSet[] within = new BitSet[maxEdits + 1];
+        for (int d = 0; d <= maxEdits; d++) {
+            within[d] = (BitSet) candidates.clone();
+        }
+        List<String> words = TermIndex.words(text);
+        if (words.isEmpty()) {
+            for (BitSet rows : within) {
+                rows.clear();
+            }
+        }
+        TermIndex index = terms();
+        for (String word : words) {
+            int allowed = Math.min(maxEdits, word.length() / 3);
+            BitSet[] byDistance = index.rowsByDistance(word, allowed);
+            BitSet matched = new BitSet(store.size());
+            for (int d = 0; d <= maxEdits; d++) {
+                if (d <= allowed) {
+                    matched.or(byDistance[d]);
+                }
+                within[d].and(matched);
+            }
+        }
+
+        BitSet[] tiers = new BitSet[maxEdits + 1];
+        tiers[0] = matching(text, candidates);
+        tiers[0].or(within[0]);
+        for (int d = 1; d <= maxEdits; d++) {
+            tiers[d] = (BitSet) within[d].clone();
+            tiers[d].andNot(within[d - 1]);
+            tiers[d].andNot(tiers[0]);
+        }
+        return tiers;
+    }
+
+    IsbnIndex isbns() {
+        IsbnIndex current = isbns;
+        if (current == null) {
+            current = new IsbnIndex(store);
+            isbns = current;
+        }
+        return current;
+    }
+
+    private TermIndex terms() {
+        TermIndex current = terms;
+        if (current == null) {
+            current = new TermIndex(store);
+            terms = current;
+        }
+        return current;
+    }
+
+    /** Facet counts within the selected rows; see {@link CatalogFacets#count}. */
+    Map<String, Object> facetCounts(BitSet rows) {
+        CatalogFacets current = facets;
+        if (current == null) {
+            current = new CatalogFacets(store);
+            facets = current;
+        }
+        return current.count(rows, inStockWords, store);
+    }
+
+    /** The selected rows in catalog order, or by price when {@code byPrice} is non-zero (1 up, -1 down). */
+    int[] order(BitSet rows, int byPrice) {
+        if (byPrice == 0) {
+            return rows.stream().toArray();
+        }
+        int[] ordered = new int[rows.cardinality()];
+        int n = 0;
+        for (int row : rowsByPrice) {
+            if (rows.get(row)) {
+                ordered[n++] = row;
+            }
+        }
+        if (byPrice < 0) {
+            for (int i = 0, j = ordered.length - 1; i < j; i++, j--) {
+                int swap = ordered[i];
+                ordered[i] = ordered[j];
+                ordered[j] = swap;
+            }
+        }
+        return ordered;
+    }
+
+    /** First position priced at or above {@code price}. */
+    private int lowerBound(double price) {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** First position priced above {@code price}. */
+    private int upperBound(double price) {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] <= price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean contains(String value, String lowerText) {
+        return value != null && value.toLowerCase().contains(lowerText);
+    }
+}
@@ -0,0 +1,121 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * One immutable version of the catalog. The books live in a {@link CatalogStore} and this
+ * class exposes them as read-only list views. It is built once by a writer and never
+ * changed afterwards, so any number of readers can use it without locking. Returned Book
+ * objects may be shared between readers and must be treated as read-only.
+ */
+public final class CatalogSnapshot {
+    private final long version;
+    private final long layoutVersion;
+    private final CatalogStore store;
+    private final List<Book> books;
+    private volatile CatalogIndex index;
+
+    private static final class RowList extends AbstractList<Book> implements RandomAccess {
+        private final CatalogStore store;
+        private final int[] rows;
+
+        RowList(CatalogStore store, int[] rows) {
+            this.store = store;
+            this.rows = rows;
+        }
+
+        @Override
+        public Book get(int index) {
+            return store.get(rows == null ? index : rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows == null ? store.size() : rows.length;
+        }
+    }
+
+    CatalogSnapshot(long version, CatalogStore store) {
+        this.version = version;
+        this.layoutVersion = version;
+        this.store = store;
+        this.books = new RowList(store, null);
+    }
+
+    /**
+     * A version whose rows match {@code previous} in everything but stock. If the previous
+     * version's index was built, the new one is derived from it instead of from scratch.
+     */
+    CatalogSnapshot(long version, CatalogStore store, CatalogSnapshot previous) {
+        this.version = version;
+        this.layoutVersion = previous.layoutVersion;
+        this.store = store;
+        this.books = new RowList(store, null);
+        CatalogIndex previousIndex = previous.index;
+        if (previousIndex != null) {
+            this.index = previousIndex.withStock(store);
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The version of the last change to anything but stock levels. While it stays the same,
+     * rows keep their books, titles and prices.
+     */
+    long getLayoutVersion() {
+        return layoutVersion;
+    }
+
+    CatalogStore getStore() {
+        return store;
+    }
+
+    /** Filter indexes, built on first use; benign if two threads race to build them. */
+    CatalogIndex getIndex() {
+        CatalogIndex current = index;
+        if (current == null) {
+            current = new CatalogIndex(store);
+            index = current;
+        }
+        return current;
+    }
+
+    /** Books at the given rows, in that order. */
+    List<Book> getBooks(int[] rows) {
+        return new RowList(store, rows);
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public Book getBook(String bookId) {
+        int row = store.rowOf(bookId);
+        return row < 0 ? null : store.get(row);
+    }
+
+    /** Books of one category, matched case-insensitively. */
+    public List<Book> getBooksByCategory(String category) {
+        return new RowList(store, store.rowsInCategory(category));
+    }
+
+    /** Approximate heap size of this version, for the admin API. */
+    public long getEstimatedBytes() {
+        return store.estimatedBytes();
+    }
+
+    public long getOffHeapBytes() {
+        return store.offHeapBytes();
+    }
+
+    public String getStoreKind() {
+        return store.kind();
+    }
+}
@@ -0,0 +1,50 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+
+/**
+ * Physical layout of one immutable catalog version. Rows are numbered 0..size()-1 in
+ * file order. {@link #get(int)} may return a shared object or build a fresh one, so callers
+ * must not modify what it returns. The column accessors let indexes read a single field
+ * without building a Book.
+ */
+interface CatalogStore {
+    int size();
+
+    Book get(int row);
+
+    /** Row of the book with this id, or -1. */
+    int rowOf(String bookId);
+
+    String title(int row);
+
+    String author(int row);
+
+    String isbn(int row);
+
+    String category(int row);
+
+    double price(int row);
+
+    int stock(int row);
+
+    /**
+     * A store equal to this one except that row {@code rows[i]} has stock {@code stocks[i]}.
+     * Everything that does not depend on stock is shared with this store, not copied.
+     */
+    CatalogStore withStocks(int[] rows, int[] stocks);
+
+    /** Rows of one category matched case-insensitively, in ascending order. */
+    int[] rowsInCategory(String category);
+
+    /** "objects", "columnar" or "offheap". */
+    String kind();
+
+    /** Approximate heap retained by this store, in bytes. */
+    long estimatedBytes();
+
+    /** Bytes held outside the Java heap. */
+    default long offHeapBytes() {
+        return 0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Order;
+import com.bookgetter.utils.FileUtil;
+import com.bookgetter.utils.JsonUtil;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only redo log for checkouts, one JSON record per line. A BEGIN record carries
+ * everything the checkout changes (the order, the resulting absolute stock levels and the
+ * cart owner) and is forced to disk before any data file is touched; COMMIT marks that all
+ * data files have been written and is forced as well, so a checkout is only ever replayed
+ * when it really was interrupted.
+ */
+class CheckoutJournal {
+    private static final String JOURNAL_FILE = "checkout.log";
+    private static final long COMPACT_THRESHOLD_BYTES = 1024 * 1024;
+
+    static final String BEGIN = "BEGIN";
+    static final String COMMIT = "COMMIT";
+
+    static class Record {
+        String type;
+        String checkoutId;
+        String userId;
+        Order order;
+        Map<String, Integer> stockAfter;
+
+        Record() {}
+
+        Record(String type, String checkoutId) {
+            this.type = type;
+            this.checkoutId = checkoutId;
+        }
+    }
+
+    /**
+     * Forced to disk before any data file is written.
+     */
+    void begin(Record record) throws IOException {
+        FileUtil.appendFileDurably(JOURNAL_FILE, JsonUtil.toCompactJson(record) + "\n");
+    }
+
+    /**
+     * Forced like BEGIN. Replay sets absolute stock levels and clears the cart, so replaying
+     * a finished checkout would undo any stock or cart change made after it.
+     */
+    void commit(String checkoutId) throws IOException {
+        FileUtil.appendFileDurably(JOURNAL_FILE, JsonUtil.toCompactJson(new Record(COMMIT, checkoutId)) + "\n");
+        if (FileUtil.fileSize(JOURNAL_FILE) > COMPACT_THRESHOLD_BYTES && pending().isEmpty()) {
+            clear();
+        }
+    }
+
+    /**
+     * BEGIN records without a matching COMMIT, in log order. A torn final line (crash while
+     * writing BEGIN) is ignored: nothing was applied for it, so it is effectively rolled back.
+     */
+    List<Record> pending() throws IOException {
+        return pending(FileUtil.readFile(JOURNAL_FILE));
+    }
+
+    void clear() throws IOException {
+        FileUtil.deleteFile(JOURNAL_FILE);
+    }
+
+    private List<Record> pending(String content) {
+        Map<String, Record> begun = new LinkedHashMap<>();
+        Set<String> committed = new HashSet<>();
+        if (content == null) {
+            return new ArrayList<>();
+        }
+        for (String line : content.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            Record record;
+            try {
+                record = JsonUtil.fromJson(line, Record.class);
+            } catch (JsonParseException e) {
+                continue;
+            }
+            if (record == null || record.checkoutId == null) {
+                continue;
+            }
+            if (BEGIN.equals(record.type) && record.order != null) {
+                begun.put(record.checkoutId, record);
+            } else if (COMMIT.equals(record.type)) {
+                committed.add(record.checkoutId);
+            }
+        }
+        List<Record> result = new ArrayList<>();
+        for (Record record : begun.values()) {
+            if (!committed.contains(record.checkoutId)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+}
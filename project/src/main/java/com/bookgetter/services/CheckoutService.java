@@ -0,0 +1,166 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+import com.bookgetter.models.Cart;
+import com.bookgetter.models.CartItem;
+import com.bookgetter.models.Order;
+import com.bookgetter.models.OrderItem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checkout as one unit of work: the order, the stock decrements and the cart clear are
+ * staged, logged to the checkout journal with one forced write, and only then applied to
+ * books.json, orders.json and carts.json (one write each). A second forced write marks the
+ * checkout done. Incomplete checkouts found in the journal at startup are replayed by
+ * {@link #recover()}.
+ * <p>
+ * Stock is read, logged and written while holding the catalog's lock, so the logged
+ * levels are exactly what is written and no other stock change can slip in between.
+ */
+public class CheckoutService {
+    private static CheckoutService instance;
+
+    private final CheckoutJournal journal = new CheckoutJournal();
+    private boolean needsRecovery = false;
+    /** Checkouts logged by this process whose stock update has been written. */
+    private final Set<String> stockApplied = new HashSet<>();
+
+    private CheckoutService() {}
+
+    public static synchronized CheckoutService getInstance() {
+        if (instance == null) {
+            instance = new CheckoutService();
+        }
+        return instance;
+    }
+
+    public synchronized Order checkout(String userId, String shippingAddress, String phone) throws IOException {
+        if (needsRecovery) {
+            recover();
+        }
+
+        Cart cart = CartService.getInstance().getOrCreateCart(userId);
+        if (cart.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty");
+        }
+
+        InventoryService inventory = InventoryService.getInstance();
+        BookService bookService = BookService.getInstance();
+        CheckoutJournal.Record record;
+        synchronized (bookService) {
+            record = stage(userId, cart, shippingAddress, phone);
+            journal.begin(record);
+            for (CartItem cartItem : cart.getItems()) {
+                inventory.consume(userId, cartItem.getBookId(), cartItem.getQuantity());
+            }
+            try {
+                bookService.setStocks(record.stockAfter);
+            } catch (IOException e) {
+                // Logged but not applied: finish it before the next checkout computes stock
+                needsRecovery = true;
+                throw e;
+            }
+            stockApplied.add(record.checkoutId);
+        }
+
+        try {
+            apply(record);
+        } catch (IOException e) {
+            needsRecovery = true;
+            throw e;
+        }
+        return record.order;
+    }
+
+    /**
+     * The order and the stock levels it leaves, from the current catalog. Called with the
+     * catalog's lock held.
+     */
+    private CheckoutJournal.Record stage(String userId, Cart cart, String shippingAddress, String phone)
+            throws IOException {
+        BookService bookService = BookService.getInstance();
+        InventoryService inventory = InventoryService.getInstance();
+        List<OrderItem> orderItems = new ArrayList<>();
+        Map<String, Integer> stockAfter = new HashMap<>();
+        for (CartItem cartItem : cart.getItems()) {
+            Book book = bookService.getBookById(cartItem.getBookId());
+            if (book == null) {
+                throw new IllegalArgumentException(cartItem.getBookTitle() + " is no longer available");
+            }
+            int remaining = stockAfter.getOrDefault(book.getId(), book.getStock()) - cartItem.getQuantity();
+            // Re-takes the hold if it expired, so units held by other carts are never sold here
+            if (remaining < 0 || !inventory.hold(userId, book.getId(), cartItem.getQuantity())) {
+                throw new IllegalArgumentException("Insufficient stock for " + book.getTitle());
+            }
+            stockAfter.put(book.getId(), remaining);
+            OrderItem orderItem = new OrderItem(
+                cartItem.getBookId(),
+                cartItem.getBookTitle(),
+                cartItem.getBookAuthor(),
+                cartItem.getPrice(),
+                cartItem.getQuantity()
+            );
+            orderItem.setCategory(book.getCategory());
+            orderItems.add(orderItem);
+        }
+
+        Order order = new Order(userId, orderItems, cart.getTotalAmount(), shippingAddress, phone);
+
+        CheckoutJournal.Record record = new CheckoutJournal.Record(CheckoutJournal.BEGIN, order.getId());
+        record.userId = userId;
+        record.order = order;
+        record.stockAfter = stockAfter;
+        return record;
+    }
+
+    /**
+     * Finish every checkout that was logged but not committed. At startup this must run
+     * before anything writes the data files.
+     *
+     * The logged stock levels are absolute, so they are only written when this checkout's
+     * stock update may be missing: never once its order exists (stock is written first),
+     * and for a checkout of this process that failed later on, never twice. A checkout of
+     * this process that failed before its stock was written takes its quantities off the
+     * current stock instead, since other writes may have happened in the meantime.
+     */
+    public synchronized int recover() throws IOException {
+        List<CheckoutJournal.Record> pending = journal.pending();
+        for (CheckoutJournal.Record record : pending) {
+            boolean ordered = OrderService.getInstance().getOrderById(record.order.getId()) != null;
+            if (!ordered && !stockApplied.contains(record.checkoutId)) {
+                if (needsRecovery) {
+                    Map<String, Integer> sold = new HashMap<>();
+                    for (OrderItem item : record.order.getItems()) {
+                        sold.merge(item.getBookId(), item.getQuantity(), Integer::sum);
+                    }
+                    BookService.getInstance().takeStocks(sold);
+                } else {
+                    BookService.getInstance().setStocks(record.stockAfter);
+                }
+            }
+            apply(record);
+        }
+        journal.clear();
+        stockApplied.clear();
+        needsRecovery = false;
+        return pending.size();
+    }
+
+    /**
+     * Everything after the stock update. The cart is only cleared if it has not changed
+     * since the order was placed, so a cart built after a failed checkout survives.
+     */
+    private void apply(CheckoutJournal.Record record) throws IOException {
+        OrderService.getInstance().createOrder(record.order);
+        CartService.getInstance().clearCartUnchangedSince(record.userId, record.order.getCreatedAt());
+        journal.commit(record.checkoutId);
+        stockApplied.remove(record.checkoutId);
+    }
+}
@@ -0,0 +1,292 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact layout for very large catalogs. Prices, stock and creation times are primitive
+ * arrays. Categories and authors are dictionary-encoded. The other strings are packed as
+ * UTF-8 into one byte array per field. Ids are found through an open-addressing hash table
+ * of row numbers. The only objects per title are the ones {@link #get(int)} creates for
+ * the caller.
+ */
+class ColumnarCatalogStore implements CatalogStore {
+    private static final int[] NO_ROWS = new int[0];
+
+    /** UTF-8 strings back to back; row i spans offsets[i]..offsets[i+1]. */
+    private static final class StringColumn {
+        final byte[] data;
+        final int[] offsets;
+        final BitSet nulls;
+
+        StringColumn(List<String> values) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            offsets = new int[values.size() + 1];
+            nulls = new BitSet(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                if (value == null) {
+                    nulls.set(i);
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.write(bytes, 0, bytes.length);
+                }
+                offsets[i + 1] = out.size();
+            }
+            data = out.toByteArray();
+        }
+
+        String get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return new String(data, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+        }
+
+        boolean matches(int row, byte[] value) {
+            return !nulls.get(row)
+                && Arrays.equals(data, offsets[row], offsets[row + 1], value, 0, value.length);
+        }
+
+        long bytes() {
+            return ObjectCatalogStore.align(16 + data.length) + ObjectCatalogStore.align(16 + 4L * offsets.length)
+                + ObjectCatalogStore.align(16 + nulls.size() / 8);
+        }
+    }
+
+    /** Each distinct value stored once; rows hold an index into it (-1 for null). */
+    private static final class DictionaryColumn {
+        final String[] values;
+        final int[] codes;
+
+        DictionaryColumn(List<String> rows) {
+            Map<String, Integer> dictionary = new HashMap<>();
+            List<String> distinct = new ArrayList<>();
+            codes = new int[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                String value = rows.get(i);
+                if (value == null) {
+                    codes[i] = -1;
+                    continue;
+                }
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = distinct.size();
+                    dictionary.put(value, code);
+                    distinct.add(value);
+                }
+                codes[i] = code;
+            }
+            values = distinct.toArray(new String[0]);
+        }
+
+        String get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : values[code];
+        }
+
+        long bytes() {
+            long bytes = ObjectCatalogStore.align(16 + 4L * codes.length) + ObjectCatalogStore.align(16 + 4L * values.length);
+            for (String value : values) {
+                bytes += ObjectCatalogStore.align(24) + ObjectCatalogStore.align(16 + value.length());
+            }
+            return bytes;
+        }
+    }
+
+    private final int size;
+    private final StringColumn ids;
+    private final StringColumn titles;
+    private final StringColumn isbns;
+    private final StringColumn descriptions;
+    private final StringColumn imageUrls;
+    private final DictionaryColumn authors;
+    private final DictionaryColumn categories;
+    private final double[] prices;
+    private final int[] stock;
+    private final long[] createdAt;
+    private final int[] idTable;
+    private final Map<String, int[]> rowsByCategory;
+
+    ColumnarCatalogStore(List<Book> books) {
+        size = books.size();
+        rowsByCategory = new HashMap<>();
+        List<String> idValues = new ArrayList<>(size);
+        List<String> titleValues = new ArrayList<>(size);
+        List<String> isbnValues = new ArrayList<>(size);
+        List<String> descriptionValues = new ArrayList<>(size);
+        List<String> imageValues = new ArrayList<>(size);
+        List<String> authorValues = new ArrayList<>(size);
+        List<String> categoryValues = new ArrayList<>(size);
+        prices = new double[size];
+        stock = new int[size];
+        createdAt = new long[size];
+        for (int row = 0; row < size; row++) {
+            Book book = books.get(row);
+            idValues.add(book.getId());
+            titleValues.add(book.getTitle());
+            isbnValues.add(book.getIsbn());
+            descriptionValues.add(book.getDescription());
+            imageValues.add(book.getImageUrl());
+            authorValues.add(book.getAuthor());
+            categoryValues.add(book.getCategory());
+            prices[row] = book.getPrice();
+            stock[row] = book.getStock();
+            createdAt[row] = book.getCreatedAt();
+        }
+        ids = new StringColumn(idValues);
+        titles = new StringColumn(titleValues);
+        isbns = new StringColumn(isbnValues);
+        descriptions = new StringColumn(descriptionValues);
+        imageUrls = new StringColumn(imageValues);
+        authors = new DictionaryColumn(authorValues);
+        categories = new DictionaryColumn(categoryValues);
+
+        idTable = new int[tableSize(size)];
+        for (int row = 0; row < size; row++) {
+            int slot = slotFor(idValues.get(row).hashCode());
+            while (idTable[slot] != 0) {
+                slot = (slot + 1) & (idTable.length - 1);
+            }
+            idTable[slot] = row + 1;
+        }
+
+        Map<String, List<Integer>> byCategory = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            String category = categories.get(row);
+            if (category != null) {
+                byCategory.computeIfAbsent(ObjectCatalogStore.categoryKey(category), c -> new ArrayList<>()).add(row);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : byCategory.entrySet()) {
+            rowsByCategory.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private ColumnarCatalogStore(ColumnarCatalogStore base, int[] stock) {
+        size = base.size;
+        ids = base.ids;
+        titles = base.titles;
+        isbns = base.isbns;
+        descriptions = base.descriptions;
+        imageUrls = base.imageUrls;
+        authors = base.authors;
+        categories = base.categories;
+        prices = base.prices;
+        createdAt = base.createdAt;
+        idTable = base.idTable;
+        rowsByCategory = base.rowsByCategory;
+        this.stock = stock;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book get(int row) {
+        return new Book(ids.get(row), titles.get(row), authors.get(row), isbns.get(row), prices[row],
+            categories.get(row), descriptions.get(row), imageUrls.get(row), stock[row], createdAt[row]);
+    }
+
+    @Override
+    public int rowOf(String bookId) {
+        if (bookId == null) {
+            return -1;
+        }
+        byte[] wanted = bookId.getBytes(StandardCharsets.UTF_8);
+        int slot = slotFor(bookId.hashCode());
+        while (idTable[slot] != 0) {
+            int row = idTable[slot] - 1;
+            if (ids.matches(row, wanted)) {
+                return row;
+            }
+            slot = (slot + 1) & (idTable.length - 1);
+        }
+        return -1;
+    }
+
+    @Override
+    public String title(int row) {
+        return titles.get(row);
+    }
+
+    @Override
+    public String author(int row) {
+        return authors.get(row);
+    }
+
+    @Override
+    public String isbn(int row) {
+        return isbns.get(row);
+    }
+
+    @Override
+    public String category(int row) {
+        return categories.get(row);
+    }
+
+    @Override
+    public double price(int row) {
+        return prices[row];
+    }
+
+    @Override
+    public int stock(int row) {
+        return stock[row];
+    }
+
+    @Override
+    public CatalogStore withStocks(int[] rows, int[] stocks) {
+        int[] copy = stock.clone();
+        for (int i = 0; i < rows.length; i++) {
+            copy[rows[i]] = stocks[i];
+        }
+        return new ColumnarCatalogStore(this, copy);
+    }
+
+    @Override
+    public int[] rowsInCategory(String category) {
+        return category == null ? NO_ROWS : rowsByCategory.getOrDefault(ObjectCatalogStore.categoryKey(category), NO_ROWS);
+    }
+
+    @Override
+    public String kind() {
+        return "columnar";
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = ids.bytes() + titles.bytes() + isbns.bytes() + descriptions.bytes() + imageUrls.bytes()
+            + authors.bytes() + categories.bytes()
+            + ObjectCatalogStore.align(16 + 8L * size) * 2 + ObjectCatalogStore.align(16 + 4L * size)
+            + ObjectCatalogStore.align(16 + 4L * idTable.length);
+        for (int[] rows : rowsByCategory.values()) {
+            bytes += ObjectCatalogStore.align(16 + 4L * rows.length);
+        }
+        return bytes;
+    }
+
+    private int slotFor(int hash) {
+        int spread = hash ^ (hash >>> 16);
+        return (spread * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(idTable.length));
+    }
+
+    /** Power of two, at most half full. */
+    private static int tableSize(int entries) {
+        int size = 2;
+        while (size < entries * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,113 @@
+package com.bookgetter.services;
+
+import com.bookgetter.events.OrderEvent;
+import com.bookgetter.events.OrderEventListener;
+import com.bookgetter.models.Book;
+import com.bookgetter.models.Order;
+import com.bookgetter.models.User;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live dashboard counters. Rebuilt once from the data files at startup and then kept
+ * current by the services that add books and users and by the order event pipeline, so
+ * reading them never touches the data files.
+ */
+public class DashboardStats implements OrderEventListener {
+    private static DashboardStats instance;
+
+    private final LongAdder totalBooks = new LongAdder();
+    private final LongAdder totalOrders = new LongAdder();
+    private final LongAdder totalUsers = new LongAdder();
+    private final LongAdder totalCustomers = new LongAdder();
+    private final LongAdder pendingOrders = new LongAdder();
+    private final DoubleAdder totalRevenue = new DoubleAdder();
+
+    private DashboardStats() {}
+
+    public static synchronized DashboardStats getInstance() {
+        if (instance == null) {
+            instance = new DashboardStats();
+        }
+        return instance;
+    }
+
+    public synchronized void rebuild() throws IOException {
+        List<Book> books = BookService.getInstance().getAllBooks();
+        List<Order> orders = OrderService.getInstance().getAllOrders();
+        List<User> users = UserService.getInstance().getAllUsers();
+
+        totalBooks.reset();
+        totalOrders.reset();
+        totalUsers.reset();
+        totalCustomers.reset();
+        pendingOrders.reset();
+        totalRevenue.reset();
+
+        totalBooks.add(books.size());
+        for (User user : users) {
+            onUserRegistered(user);
+        }
+        for (Order order : orders) {
+            onOrderCreated(order.getTotalAmount(), order.getStatus());
+        }
+    }
+
+    public void onBookAdded() {
+        totalBooks.increment();
+    }
+
+    public void onBookDeleted() {
+        totalBooks.decrement();
+    }
+
+    public void onUserRegistered(User user) {
+        totalUsers.increment();
+        if ("customer".equals(user.getRole())) {
+            totalCustomers.increment();
+        }
+    }
+
+    @Override
+    public void onEvents(List<OrderEvent> events) {
+        for (OrderEvent event : events) {
+            if (event.getType() == OrderEvent.Type.CREATED) {
+                onOrderCreated(event.getOrder().getTotalAmount(), event.getNewStatus());
+            } else {
+                onOrderStatusChanged(event.getOldStatus(), event.getNewStatus());
+            }
+        }
+    }
+
+    private void onOrderCreated(double totalAmount, String status) {
+        totalOrders.increment();
+        totalRevenue.add(totalAmount);
+        if ("pending".equals(status)) {
+            pendingOrders.increment();
+        }
+    }
+
+    private void onOrderStatusChanged(String oldStatus, String newStatus) {
+        if ("pending".equals(oldStatus) && !"pending".equals(newStatus)) {
+            pendingOrders.decrement();
+        } else if (!"pending".equals(oldStatus) && "pending".equals(newStatus)) {
+            pendingOrders.increment();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalBooks", totalBooks.sum());
+        stats.put("totalOrders", totalOrders.sum());
+        stats.put("totalCustomers", totalCustomers.sum());
+        stats.put("totalRevenue", totalRevenue.sum());
+        stats.put("pendingOrders", pendingOrders.sum());
+        stats.put("totalUsers", totalUsers.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,262 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+import com.bookgetter.models.Cart;
+import com.bookgetter.models.CartItem;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory inventory: per book, the units on hand and the units held by carts, packed
+ * into one AtomicLong so reserve and release are single compare-and-set loops with no
+ * lock. A cart line holds its quantity until the hold expires; {@link #sweepExpired()}
+ * gives expired holds back. books.json stays the record of units on hand.
+ */
+public class InventoryService {
+    private static final long DEFAULT_HOLD_MILLIS = 15 * 60 * 1000L;
+    private static InventoryService instance;
+
+    private final Map<String, Stock> stocks = new ConcurrentHashMap<>();
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private volatile long holdMillis = DEFAULT_HOLD_MILLIS;
+
+    /** High 32 bits: units on hand. Low 32 bits: units held by carts. */
+    private static final class Stock {
+        private final AtomicLong state;
+
+        Stock(int onHand) {
+            state = new AtomicLong(pack(onHand, 0));
+        }
+
+        boolean tryReserve(int quantity) {
+            while (true) {
+                long current = state.get();
+                int onHand = onHand(current);
+                int held = held(current);
+                if (onHand - held < quantity) {
+                    return false;
+                }
+                if (state.compareAndSet(current, pack(onHand, held + quantity))) {
+                    return true;
+                }
+            }
+        }
+
+        void release(int quantity) {
+            while (true) {
+                long current = state.get();
+                int held = Math.max(0, held(current) - quantity);
+                if (state.compareAndSet(current, pack(onHand(current), held))) {
+                    return;
+                }
+            }
+        }
+
+        /** Units sold: leave stock, and leave the hold that covered them. */
+        void consume(int quantity, int heldQuantity) {
+            while (true) {
+                long current = state.get();
+                int onHand = Math.max(0, onHand(current) - quantity);
+                int held = Math.max(0, held(current) - heldQuantity);
+                if (state.compareAndSet(current, pack(onHand, held))) {
+                    return;
+                }
+            }
+        }
+
+        void setOnHand(int onHand) {
+            while (true) {
+                long current = state.get();
+                if (state.compareAndSet(current, pack(onHand, held(current)))) {
+                    return;
+                }
+            }
+        }
+
+        int available() {
+            long current = state.get();
+            return Math.max(0, onHand(current) - held(current));
+        }
+
+        private static long pack(int onHand, int held) {
+            return ((long) onHand << 32) | (held & 0xFFFFFFFFL);
+        }
+
+        private static int onHand(long state) {
+            return (int) (state >>> 32);
+        }
+
+        private static int held(long state) {
+            return (int) state;
+        }
+    }
+
+    private static final class Hold {
+        final String bookId;
+        final int quantity;
+        final long expiresAt;
+
+        Hold(String bookId, int quantity, long expiresAt) {
+            this.bookId = bookId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private InventoryService() {}
+
+    public static synchronized InventoryService getInstance() {
+        if (instance == null) {
+            instance = new InventoryService();
+        }
+        return instance;
+    }
+
+    /**
+     * Load stock levels and re-establish the holds of carts that have not expired yet.
+     */
+    public void init(long holdMillis) throws IOException {
+        this.holdMillis = holdMillis;
+        holds.clear();
+        stocks.clear();
+        for (Book book : BookService.getInstance().getAllBooks()) {
+            stocks.put(book.getId(), new Stock(book.getStock()));
+        }
+        for (Cart cart : CartService.getInstance().getAllCarts()) {
+            long expiresAt = cart.getUpdatedAt() + holdMillis;
+            if (expiresAt <= System.currentTimeMillis()) {
+                continue;
+            }
+            for (CartItem item : cart.getItems()) {
+                hold(cart.getUserId(), item.getBookId(), item.getQuantity(), expiresAt);
+            }
+        }
+    }
+
+    /**
+     * Set the quantity a user's cart line holds, reserving or releasing the difference, and
+     * restart the hold's timer.
+     * @return false when there is not enough unheld stock; the previous hold is kept
+     */
+    public boolean hold(String userId, String bookId, int quantity) throws IOException {
+        return hold(userId, bookId, quantity, System.currentTimeMillis() + holdMillis);
+    }
+
+    private boolean hold(String userId, String bookId, int quantity, long expiresAt) throws IOException {
+        Stock stock = stockFor(bookId);
+        if (stock == null) {
+            return false;
+        }
+        boolean[] reserved = {true};
+        holds.compute(holdKey(userId, bookId), (key, current) -> {
+            int delta = quantity - (current == null ? 0 : current.quantity);
+            if (delta > 0 && !stock.tryReserve(delta)) {
+                reserved[0] = false;
+                return current;
+            }
+            if (delta < 0) {
+                stock.release(-delta);
+            }
+            return quantity > 0 ? new Hold(bookId, quantity, expiresAt) : null;
+        });
+        return reserved[0];
+    }
+
+    public void release(String userId, String bookId) {
+        holds.computeIfPresent(holdKey(userId, bookId), (key, current) -> {
+            releaseHold(current);
+            return null;
+        });
+    }
+
+    /**
+     * Turn a user's hold into a sale: the units leave stock and the hold is dropped.
+     */
+    public void consume(String userId, String bookId, int quantity) {
+        Hold hold = holds.remove(holdKey(userId, bookId));
+        Stock stock = stocks.get(bookId);
+        if (stock != null) {
+            stock.consume(quantity, hold == null ? 0 : hold.quantity);
+        }
+    }
+
+    /**
+     * Units a user may have in their cart line: what nobody holds plus what they hold.
+     */
+    public int availableTo(String userId, String bookId) throws IOException {
+        Stock stock = stockFor(bookId);
+        if (stock == null) {
+            return 0;
+        }
+        Hold hold = holds.get(holdKey(userId, bookId));
+        return stock.available() + (hold == null ? 0 : hold.quantity);
+    }
+
+    /**
+     * Release every hold whose timer has run out.
+     * @return number of holds released
+     */
+    public int sweepExpired() {
+        long now = System.currentTimeMillis();
+        int released = 0;
+        for (Map.Entry<String, Hold> entry : holds.entrySet()) {
+            if (entry.getValue().expiresAt > now) {
+                continue;
+            }
+            boolean[] expired = {false};
+            holds.computeIfPresent(entry.getKey(), (key, current) -> {
+                if (current.expiresAt > now) {
+                    return current;
+                }
+                releaseHold(current);
+                expired[0] = true;
+                return null;
+            });
+            if (expired[0]) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Called when the units on hand change outside checkout (admin edits, new books).
+     * Existing holds are kept.
+     */
+    public void onStockChanged(String bookId, int stock) {
+        Stock existing = stocks.putIfAbsent(bookId, new Stock(stock));
+        if (existing != null) {
+            existing.setOnHand(stock);
+        }
+    }
+
+    public void onBookDeleted(String bookId) {
+        stocks.remove(bookId);
+    }
+
+    private Stock stockFor(String bookId) throws IOException {
+        Stock stock = stocks.get(bookId);
+        if (stock != null) {
+            return stock;
+        }
+        Book book = BookService.getInstance().getBookById(bookId);
+        if (book == null) {
+            return null;
+        }
+        return stocks.computeIfAbsent(bookId, id -> new Stock(book.getStock()));
+    }
+
+    private void releaseHold(Hold hold) {
+        Stock stock = stocks.get(hold.bookId);
+        if (stock != null) {
+            stock.release(hold.quantity);
+        }
+    }
+
+    private static String holdKey(String userId, String bookId) {
+        return userId + ":" + bookId;
+    }
+}
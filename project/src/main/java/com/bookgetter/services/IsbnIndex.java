@@ -0,0 +1,109 @@
+package com.bookgetter.services;
+
+import com.bookgetter.utils.IsbnUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rows by normalized ISBN (see {@link IsbnUtil#normalize}). Real ISBN-13s start with 978
+ * or 979, so the 10 digits after "97" fit in 35 bits and each one is packed with its row
+ * (28 bits) into a single sorted long. Anything else that was typed into the field goes
+ * to a small map.
+ */
+final class IsbnIndex {
+    private static final long ISBN_BASE = 9_780_000_000_000L;
+    private static final long ISBN_SPAN = 20_000_000_000L;
+    private static final int ROW_BITS = 28;
+    private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+    private static final int[] NO_ROWS = new int[0];
+
+    private final long[] packed;
+    private final Map<String, int[]> others = new HashMap<>();
+
+    IsbnIndex(CatalogStore store) {
+        long[] keys = new long[store.size()];
+        int count = 0;
+        for (int row = 0; row < store.size(); row++) {
+            String isbn = IsbnUtil.normalize(store.isbn(row));
+            if (isbn == null) {
+                continue;
+            }
+            long offset = IsbnUtil.toNumber(isbn) - ISBN_BASE;
+            if (offset >= 0 && offset < ISBN_SPAN && row <= ROW_MASK) {
+                keys[count++] = offset << ROW_BITS | row;
+            } else {
+                int[] rows = others.getOrDefault(isbn, NO_ROWS);
+                rows = Arrays.copyOf(rows, rows.length + 1);
+                rows[rows.length - 1] = row;
+                others.put(isbn, rows);
+            }
+        }
+        packed = Arrays.copyOf(keys, count);
+        Arrays.sort(packed);
+    }
+
+    /** Rows carrying this normalized ISBN, in ascending order. */
+    int[] rowsOf(String isbn) {
+        return lookup(new String[] {isbn})[0];
+    }
+
+    /**
+     * Rows for each of the normalized ISBNs (null entries match nothing). The numeric ones
+     * are sorted and resolved in one forward pass over the index. Each step gallops ahead
+     * from the previous match, so a batch of k costs about k log(n/k) comparisons.
+     */
+    int[][] lookup(String[] isbns) {
+        int[][] result = new int[isbns.length][];
+        long[] wanted = new long[isbns.length];
+        int numeric = 0;
+        for (int i = 0; i < isbns.length; i++) {
+            long offset = IsbnUtil.toNumber(isbns[i]) - ISBN_BASE;
+            if (isbns[i] != null && offset >= 0 && offset < ISBN_SPAN) {
+                wanted[numeric++] = offset << ROW_BITS | i;
+            } else {
+                result[i] = isbns[i] == null ? NO_ROWS : others.getOrDefault(isbns[i], NO_ROWS);
+            }
+        }
+        Arrays.sort(wanted, 0, numeric);
+
+        int position = 0;
+        for (int w = 0; w < numeric; w++) {
+            long offset = wanted[w] >>> ROW_BITS;
+            int index = (int) (wanted[w] & ROW_MASK);
+            position = lowerBound(offset << ROW_BITS, position);
+            int end = position;
+            while (end < packed.length && packed[end] >>> ROW_BITS == offset) {
+                end++;
+            }
+            int[] rows = new int[end - position];
+            for (int r = position; r < end; r++) {
+                rows[r - position] = (int) (packed[r] & ROW_MASK);
+            }
+            result[index] = rows;
+        }
+        return result;
+    }
+
+    /** First position at or after {@code from} whose key is at least {@code key}. */
+    private int lowerBound(long key, int from) {
+        int step = 1;
+        int high = from;
+        while (high < packed.length && packed[high] < key) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, packed.length);
+        while (from < high) {
+            int mid = (from + high) >>> 1;
+            if (packed[mid] < key) {
+                from = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return from;
+    }
+}
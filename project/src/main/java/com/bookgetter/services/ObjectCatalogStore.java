@@ -0,0 +1,147 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The default layout: one Book object per title, exactly as parsed from books.json.
+ */
+class ObjectCatalogStore implements CatalogStore {
+    private static final int[] NO_ROWS = new int[0];
+
+    private final Book[] books;
+    private final Map<String, Integer> rowsById;
+    private final Map<String, int[]> rowsByCategory;
+
+    ObjectCatalogStore(List<Book> books) {
+        this.books = books.toArray(new Book[0]);
+        this.rowsById = new HashMap<>();
+        this.rowsByCategory = new HashMap<>();
+        Map<String, List<Integer>> categories = new HashMap<>();
+        for (int row = 0; row < this.books.length; row++) {
+            Book book = this.books[row];
+            rowsById.put(book.getId(), row);
+            if (book.getCategory() != null) {
+                categories.computeIfAbsent(categoryKey(book.getCategory()), c -> new ArrayList<>()).add(row);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : categories.entrySet()) {
+            rowsByCategory.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private ObjectCatalogStore(Book[] books, ObjectCatalogStore base) {
+        this.books = books;
+        this.rowsById = base.rowsById;
+        this.rowsByCategory = base.rowsByCategory;
+    }
+
+    @Override
+    public int size() {
+        return books.length;
+    }
+
+    @Override
+    public Book get(int row) {
+        return books[row];
+    }
+
+    @Override
+    public int rowOf(String bookId) {
+        Integer row = bookId == null ? null : rowsById.get(bookId);
+        return row == null ? -1 : row;
+    }
+
+    @Override
+    public String title(int row) {
+        return books[row].getTitle();
+    }
+
+    @Override
+    public String author(int row) {
+        return books[row].getAuthor();
+    }
+
+    @Override
+    public String isbn(int row) {
+        return books[row].getIsbn();
+    }
+
+    @Override
+    public String category(int row) {
+        return books[row].getCategory();
+    }
+
+    @Override
+    public double price(int row) {
+        return books[row].getPrice();
+    }
+
+    @Override
+    public int stock(int row) {
+        return books[row].getStock();
+    }
+
+    @Override
+    public CatalogStore withStocks(int[] rows, int[] stocks) {
+        Book[] copy = books.clone();
+        for (int i = 0; i < rows.length; i++) {
+            copy[rows[i]] = new Book(books[rows[i]]);
+            copy[rows[i]].setStock(stocks[i]);
+        }
+        return new ObjectCatalogStore(copy, this);
+    }
+
+    @Override
+    public int[] rowsInCategory(String category) {
+        return category == null ? NO_ROWS : rowsByCategory.getOrDefault(categoryKey(category), NO_ROWS);
+    }
+
+    @Override
+    public String kind() {
+        return "objects";
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return estimateBytes(books);
+    }
+
+    /**
+     * Heap held by Book objects and their Strings on a 64-bit JVM with compressed
+     * references and compact strings. Every occurrence counts, because parsed JSON gives
+     * each field its own String even when the text repeats.
+     */
+    static long estimateBytes(Book[] books) {
+        long bytes = 16 + 4L * books.length;
+        for (Book book : books) {
+            // header + 8 references + double + int + long
+            bytes += align(12 + 8 * 4 + 8 + 4 + 8);
+            bytes += stringBytes(book.getId()) + stringBytes(book.getTitle()) + stringBytes(book.getAuthor())
+                + stringBytes(book.getIsbn()) + stringBytes(book.getCategory())
+                + stringBytes(book.getDescription()) + stringBytes(book.getImageUrl());
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        boolean latin1 = value.chars().allMatch(c -> c < 256);
+        return align(24) + align(16 + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static String categoryKey(String category) {
+        return category.toLowerCase(Locale.ROOT);
+    }
+}
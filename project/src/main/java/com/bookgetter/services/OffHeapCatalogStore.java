@@ -0,0 +1,400 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+import com.bookgetter.utils.FileUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog records kept outside the Java heap, in a direct ByteBuffer or in a read-only
+ * mapping of data/catalog.bin. The heap only holds primitive arrays (record offsets, stock
+ * levels and an open-addressing id index), so garbage collection cost does not grow with
+ * the catalog. Fields are decoded from the buffer when they are read, except stock, which
+ * is read from its array so that stock-only versions can share the buffer.
+ * <p>
+ * Every layout change is also written to catalog.bin, stamped with the length and a 64-bit hash
+ * of the books.json content it came from. At startup the file is mapped instead of parsing
+ * JSON when the stamp still matches and the records decode cleanly. Stock-only versions
+ * patch their stock fields and the stamp in place instead. Record layout: price (double), stock (int), createdAt
+ * (long), then id, title, author, isbn, category, description and imageUrl, each as an
+ * int byte length (-1 for null) followed by UTF-8 bytes.
+ */
+class OffHeapCatalogStore implements CatalogStore {
+    private static final String STORE_FILE = "catalog.bin";
+    private static final int MAGIC = 0x42474354;
+    private static final int FORMAT = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+    private static final int FIXED_BYTES = 8 + 4 + 8;
+    private static final int ID = 0, TITLE = 1, AUTHOR = 2, ISBN = 3, CATEGORY = 4, DESCRIPTION = 5, IMAGE_URL = 6;
+    private static final int[] NO_ROWS = new int[0];
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int[] offsets;
+    private final int[] stocks;
+    private final int[] idTable;
+    private final Map<String, int[]> rowsByCategory;
+    /** Stamp of the books.json content catalog.bin holds this version for, or null. */
+    private volatile long[] fileStamp;
+
+    private OffHeapCatalogStore(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.rowsByCategory = new HashMap<>();
+        this.size = buffer.getInt(HEADER_BYTES - 4);
+        if (size < 0) {
+            throw new IllegalStateException("negative record count");
+        }
+        this.offsets = new int[size];
+        long position = HEADER_BYTES;
+        for (int row = 0; row < size; row++) {
+            offsets[row] = (int) position;
+            position += FIXED_BYTES;
+            for (int field = ID; field <= IMAGE_URL; field++) {
+                int length = buffer.getInt(Math.toIntExact(position));
+                if (length < -1) {
+                    throw new IllegalStateException("bad field length in record " + row);
+                }
+                position += 4 + Math.max(0, length);
+            }
+        }
+        if (position != buffer.capacity()) {
+            throw new IllegalStateException("records end at " + position + " of " + buffer.capacity() + " bytes");
+        }
+        stocks = new int[size];
+        for (int row = 0; row < size; row++) {
+            stocks[row] = buffer.getInt(offsets[row] + 8);
+        }
+
+        idTable = new int[tableSize(size)];
+        Map<String, List<Integer>> byCategory = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            int slot = slotFor(hashField(row, ID));
+            while (idTable[slot] != 0) {
+                slot = (slot + 1) & (idTable.length - 1);
+            }
+            idTable[slot] = row + 1;
+            String category = category(row);
+            if (category != null) {
+                byCategory.computeIfAbsent(ObjectCatalogStore.categoryKey(category), c -> new ArrayList<>()).add(row);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : byCategory.entrySet()) {
+            rowsByCategory.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private OffHeapCatalogStore(OffHeapCatalogStore base, int[] stocks) {
+        this.buffer = base.buffer;
+        this.size = base.size;
+        this.offsets = base.offsets;
+        this.idTable = base.idTable;
+        this.rowsByCategory = base.rowsByCategory;
+        this.stocks = stocks;
+    }
+
+    /**
+     * Map catalog.bin if it was written from {@code sourceJson} (the current books.json),
+     * otherwise null. A damaged file is reported and also gives null.
+     */
+    static OffHeapCatalogStore openIfCurrent(String sourceJson) throws IOException {
+        Path file = dataPath(STORE_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        long[] source = stamp(sourceJson);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT
+                || buffer.getLong(8) != source[0] || buffer.getLong(16) != source[1]) {
+            return null;
+        }
+        try {
+            OffHeapCatalogStore store = new OffHeapCatalogStore(buffer);
+            store.fileStamp = source;
+            return store;
+        } catch (RuntimeException e) {
+            System.out.println("[BookGetter] Ignoring damaged " + STORE_FILE + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Encode books into a new direct buffer and save it as catalog.bin for the next start.
+     * Saving is best effort: if the file cannot be replaced (for example because it is
+     * still mapped on Windows), the next start parses books.json instead.
+     */
+    static OffHeapCatalogStore build(List<Book> books, String sourceJson) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        long[] source = stamp(sourceJson);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(source[0]);
+        out.writeLong(source[1]);
+        out.writeInt(books.size());
+        for (Book book : books) {
+            out.writeDouble(book.getPrice());
+            out.writeInt(book.getStock());
+            out.writeLong(book.getCreatedAt());
+            for (String value : new String[] {book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(),
+                    book.getCategory(), book.getDescription(), book.getImageUrl()}) {
+                if (value == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            }
+        }
+        out.flush();
+        byte[] encoded = bytes.toByteArray();
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+        buffer.put(encoded).flip();
+
+        OffHeapCatalogStore store = new OffHeapCatalogStore(buffer);
+        Path file = dataPath(STORE_FILE);
+        Path temp = dataPath(STORE_FILE + ".tmp");
+        try {
+            Files.write(temp, encoded);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            store.fileStamp = source;
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            System.out.println("[BookGetter] Could not save " + STORE_FILE + ": " + e.getMessage());
+        }
+        return store;
+    }
+
+    /**
+     * Bring catalog.bin from {@code previous} to this stock-only version, which was saved
+     * as {@code sourceJson}: write the stock of each changed row in place, force it, then
+     * the new stamp. A crash in between leaves the old stamp, which no longer matches
+     * books.json. Skipped when the file does not hold {@code previous}, in which case the
+     * next start parses books.json.
+     */
+    void saveStocks(OffHeapCatalogStore previous, int[] rows, String sourceJson) {
+        long[] expected = previous.fileStamp;
+        if (expected == null) {
+            return;
+        }
+        long[] source = stamp(sourceJson);
+        try (FileChannel channel = FileChannel.open(dataPath(STORE_FILE), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            channel.read(header, 8);
+            if (header.getLong(0) != expected[0] || header.getLong(8) != expected[1]) {
+                return;
+            }
+            ByteBuffer value = ByteBuffer.allocate(4);
+            for (int row : rows) {
+                value.clear();
+                value.putInt(0, stocks[row]);
+                channel.write(value, offsets[row] + 8);
+            }
+            channel.force(false);
+            header.clear();
+            header.putLong(source[0]).putLong(source[1]).flip();
+            channel.write(header, 8);
+            channel.force(false);
+            fileStamp = source;
+        } catch (IOException e) {
+            System.out.println("[BookGetter] Could not update " + STORE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book get(int row) {
+        return new Book(field(row, ID), field(row, TITLE), field(row, AUTHOR), field(row, ISBN), price(row),
+            field(row, CATEGORY), field(row, DESCRIPTION), field(row, IMAGE_URL), stocks[row],
+            buffer.getLong(offsets[row] + 12));
+    }
+
+    @Override
+    public int rowOf(String bookId) {
+        if (bookId == null) {
+            return -1;
+        }
+        byte[] wanted = bookId.getBytes(StandardCharsets.UTF_8);
+        int slot = slotFor(hash(wanted));
+        while (idTable[slot] != 0) {
+            int row = idTable[slot] - 1;
+            if (fieldEquals(row, ID, wanted)) {
+                return row;
+            }
+            slot = (slot + 1) & (idTable.length - 1);
+        }
+        return -1;
+    }
+
+    @Override
+    public String title(int row) {
+        return field(row, TITLE);
+    }
+
+    @Override
+    public String author(int row) {
+        return field(row, AUTHOR);
+    }
+
+    @Override
+    public String isbn(int row) {
+        return field(row, ISBN);
+    }
+
+    @Override
+    public String category(int row) {
+        return field(row, CATEGORY);
+    }
+
+    @Override
+    public double price(int row) {
+        return buffer.getDouble(offsets[row]);
+    }
+
+    @Override
+    public int stock(int row) {
+        return stocks[row];
+    }
+
+    @Override
+    public CatalogStore withStocks(int[] rows, int[] stocks) {
+        int[] copy = this.stocks.clone();
+        for (int i = 0; i < rows.length; i++) {
+            copy[rows[i]] = stocks[i];
+        }
+        return new OffHeapCatalogStore(this, copy);
+    }
+
+    @Override
+    public int[] rowsInCategory(String category) {
+        return category == null ? NO_ROWS : rowsByCategory.getOrDefault(ObjectCatalogStore.categoryKey(category), NO_ROWS);
+    }
+
+    @Override
+    public String kind() {
+        return "offheap";
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = ObjectCatalogStore.align(16 + 4L * offsets.length) * 2 + ObjectCatalogStore.align(16 + 4L * idTable.length);
+        for (int[] rows : rowsByCategory.values()) {
+            bytes += ObjectCatalogStore.align(16 + 4L * rows.length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return buffer.capacity();
+    }
+
+    /** Position of a string field's length prefix. */
+    private int fieldPosition(int row, int field) {
+        int position = offsets[row] + FIXED_BYTES;
+        for (int i = 0; i < field; i++) {
+            position += 4 + Math.max(0, buffer.getInt(position));
+        }
+        return position;
+    }
+
+    private String field(int row, int field) {
+        int position = fieldPosition(row, field);
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        buffer.get(position + 4, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private boolean fieldEquals(int row, int field, byte[] value) {
+        int position = fieldPosition(row, field);
+        if (buffer.getInt(position) != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(position + 4 + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hashField(int row, int field) {
+        int position = fieldPosition(row, field);
+        int length = Math.max(0, buffer.getInt(position));
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(position + 4 + i);
+        }
+        return hash;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 0;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    private int slotFor(int hash) {
+        int spread = hash ^ (hash >>> 16);
+        return (spread * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(idTable.length));
+    }
+
+    private static int tableSize(int entries) {
+        int size = 2;
+        while (size < entries * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Length and FNV-1a hash of the books.json content, or zeros when there is none. Unlike
+     * size and modification time, this changes with every stock edit.
+     */
+    private static long[] stamp(String json) {
+        if (json == null) {
+            return new long[] {0, 0};
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < json.length(); i++) {
+            hash = (hash ^ json.charAt(i)) * 0x100000001b3L;
+        }
+        return new long[] {json.length(), hash};
+    }
+
+    private static Path dataPath(String filename) {
+        return Paths.get(FileUtil.getDataDirPath(), filename);
+    }
+}
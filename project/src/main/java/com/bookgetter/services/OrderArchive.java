@@ -0,0 +1,165 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Order;
+import com.bookgetter.utils.FileUtil;
+import com.bookgetter.utils.JsonUtil;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cold tier for old orders: one gzip-compressed JSON segment per month under
+ * data/archive, plus a small index (id, creation time, user, status, segment) that stays
+ * in memory. Orders are read back one segment at a time, and the few most recently read
+ * segments are kept decoded. Writes are serialized by OrderService.
+ */
+class OrderArchive {
+    private static final String ARCHIVE_DIR = "archive";
+    private static final String INDEX_FILE = ARCHIVE_DIR + "/orders-index.json";
+    private static final int CACHED_SEGMENTS = 4;
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    static class Entry {
+        String id;
+        long createdAt;
+        String userId;
+        String status;
+        String segment;
+    }
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Order>> segmentCache =
+        new LinkedHashMap<String, Map<String, Order>>(CACHED_SEGMENTS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Order>> eldest) {
+                return size() > CACHED_SEGMENTS;
+            }
+        };
+
+    void load() throws IOException {
+        entries.clear();
+        synchronized (segmentCache) {
+            segmentCache.clear();
+        }
+        String json = FileUtil.readFile(INDEX_FILE);
+        if (json == null || json.trim().isEmpty()) {
+            return;
+        }
+        Type listType = new TypeToken<List<Entry>>(){}.getType();
+        List<Entry> loaded = JsonUtil.fromJson(json, listType);
+        for (Entry entry : loaded) {
+            entries.put(entry.id, entry);
+        }
+    }
+
+    Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    boolean contains(String orderId) {
+        return entries.containsKey(orderId);
+    }
+
+    Order get(String orderId) throws IOException {
+        Entry entry = entries.get(orderId);
+        return entry == null ? null : segment(entry.segment).get(orderId);
+    }
+
+    /**
+     * Move orders into their monthly segments. Each touched segment is rewritten once,
+     * keeping only the orders the index still points at, and the index is saved last.
+     */
+    void add(List<Order> orders) throws IOException {
+        Map<String, List<Order>> byMonth = new HashMap<>();
+        for (Order order : orders) {
+            byMonth.computeIfAbsent(monthOf(order.getCreatedAt()), m -> new ArrayList<>()).add(order);
+        }
+        for (Map.Entry<String, List<Order>> month : byMonth.entrySet()) {
+            String segment = month.getKey();
+            Map<String, Order> contents = new LinkedHashMap<>();
+            for (Order existing : segment(segment).values()) {
+                Entry entry = entries.get(existing.getId());
+                if (entry != null && segment.equals(entry.segment)) {
+                    contents.put(existing.getId(), existing);
+                }
+            }
+            for (Order order : month.getValue()) {
+                contents.put(order.getId(), order);
+            }
+            FileUtil.writeGzipFile(segmentFile(segment), JsonUtil.toCompactJson(new ArrayList<>(contents.values())));
+            synchronized (segmentCache) {
+                segmentCache.put(segment, contents);
+            }
+            for (Order order : month.getValue()) {
+                Entry entry = new Entry();
+                entry.id = order.getId();
+                entry.createdAt = order.getCreatedAt();
+                entry.userId = order.getUserId();
+                entry.status = order.getStatus();
+                entry.segment = segment;
+                entries.put(entry.id, entry);
+            }
+        }
+        saveIndex();
+    }
+
+    /**
+     * Drop orders from the index after they moved back to the hot tier. Their copies stay
+     * in the segment until it is next rewritten.
+     */
+    void forget(Collection<String> orderIds) throws IOException {
+        boolean changed = false;
+        for (String orderId : orderIds) {
+            changed |= entries.remove(orderId) != null;
+        }
+        if (changed) {
+            saveIndex();
+        }
+    }
+
+    private Map<String, Order> segment(String segment) throws IOException {
+        synchronized (segmentCache) {
+            Map<String, Order> cached = segmentCache.get(segment);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Map<String, Order> contents = new LinkedHashMap<>();
+        String json = FileUtil.readGzipFile(segmentFile(segment));
+        if (json != null && !json.trim().isEmpty()) {
+            Type listType = new TypeToken<List<Order>>(){}.getType();
+            List<Order> orders = JsonUtil.fromJson(json, listType);
+            for (Order order : orders) {
+                contents.put(order.getId(), order);
+            }
+        }
+        synchronized (segmentCache) {
+            segmentCache.put(segment, contents);
+        }
+        return contents;
+    }
+
+    private void saveIndex() throws IOException {
+        FileUtil.writeFile(INDEX_FILE, JsonUtil.toCompactJson(new ArrayList<>(entries.values())));
+    }
+
+    private String monthOf(long millis) {
+        return MONTH_FORMAT.format(Instant.ofEpochMilli(millis).atZone(zone));
+    }
+
+    private static String segmentFile(String segment) {
+        return ARCHIVE_DIR + "/orders-" + segment + ".json.gz";
+    }
+}
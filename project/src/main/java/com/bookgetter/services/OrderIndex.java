@@ -0,0 +1,104 @@
+package com.bookgetter.services;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary indexes over orders: by creation time, by status and by user. Every index is
+ * ordered newest first, so a page is a walk from the cursor key. Readers need no lock;
+ * mutations are serialized by OrderService.
+ */
+class OrderIndex {
+
+    /** Position of an order in every index: creation time descending, then id. */
+    static final class Key {
+        final long createdAt;
+        final String id;
+
+        Key(long createdAt, String id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        static Key parse(String cursor) {
+            int sep = cursor.indexOf(':');
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            try {
+                return new Key(Long.parseLong(cursor.substring(0, sep)), cursor.substring(sep + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        String toCursor() {
+            return createdAt + ":" + id;
+        }
+    }
+
+    static final Comparator<Key> NEWEST_FIRST = Comparator
+        .comparingLong((Key k) -> k.createdAt).reversed()
+        .thenComparing(k -> k.id);
+
+    private static final NavigableSet<Key> EMPTY = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+
+    private final NavigableSet<Key> byCreated = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private final Map<String, NavigableSet<Key>> byStatus = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Key>> byUser = new ConcurrentHashMap<>();
+
+    void add(Key key, String userId, String status) {
+        byCreated.add(key);
+        setFor(byUser, userId).add(key);
+        setFor(byStatus, status).add(key);
+    }
+
+    void remove(Key key, String userId, String status) {
+        byCreated.remove(key);
+        NavigableSet<Key> userKeys = byUser.get(indexKey(userId));
+        if (userKeys != null) {
+            userKeys.remove(key);
+        }
+        NavigableSet<Key> statusKeys = byStatus.get(indexKey(status));
+        if (statusKeys != null) {
+            statusKeys.remove(key);
+        }
+    }
+
+    void changeStatus(Key key, String oldStatus, String newStatus) {
+        NavigableSet<Key> oldKeys = byStatus.get(indexKey(oldStatus));
+        if (oldKeys != null) {
+            oldKeys.remove(key);
+        }
+        setFor(byStatus, newStatus).add(key);
+    }
+
+    void clear() {
+        byCreated.clear();
+        byStatus.clear();
+        byUser.clear();
+    }
+
+    NavigableSet<Key> all() {
+        return byCreated;
+    }
+
+    NavigableSet<Key> forStatus(String status) {
+        return byStatus.getOrDefault(indexKey(status), EMPTY);
+    }
+
+    NavigableSet<Key> forUser(String userId) {
+        return byUser.getOrDefault(indexKey(userId), EMPTY);
+    }
+
+    private static NavigableSet<Key> setFor(Map<String, NavigableSet<Key>> index, String value) {
+        return index.computeIfAbsent(indexKey(value), v -> new ConcurrentSkipListSet<>(NEWEST_FIRST));
+    }
+
+    private static String indexKey(String value) {
+        return value == null ? "" : value;
+    }
+}
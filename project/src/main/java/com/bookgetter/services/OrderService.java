@@ -1,7 +1,8 @@
 package com.bookgetter.services;
 
+import com.bookgetter.events.OrderEvent;
+import com.bookgetter.events.OrderEventBus;
 import com.bookgetter.models.Order;
-import com.bookgetter.models.OrderItem;
 import com.bookgetter.utils.FileUtil;
 import com.bookgetter.utils.JsonUtil;
 import com.google.gson.reflect.TypeToken;
@@ -9,13 +10,25 @@ import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class OrderService {
     private static final String ORDERS_FILE = "orders.json";
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Set<String> TERMINAL_STATUSES = Set.of("completed", "cancelled");
     private static OrderService instance;
 
+    private final Map<String, Order> ordersById = new ConcurrentHashMap<>();
+    private final OrderIndex index = new OrderIndex();
+    private final OrderArchive archive = new OrderArchive();
+    private volatile boolean loaded = false;
+
     private OrderService() {}
 
     public static synchronized OrderService getInstance() {
@@ -37,54 +50,307 @@ public class OrderService {
         return JsonUtil.fromJson(json, listType);
     }
 
-    private void saveOrders(List<Order> orders) throws IOException {
+    /**
+     * Hot orders are parsed once and then served from memory; archived orders only have
+     * their keys in the indexes and are read from their segment on demand. Every mutation
+     * still persists orders.json before returning.
+     */
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            ordersById.clear();
+            index.clear();
+            for (Order order : loadOrders()) {
+                ordersById.put(order.getId(), order);
+                index.add(keyOf(order), order.getUserId(), order.getStatus());
+            }
+            archive.load();
+            for (OrderArchive.Entry entry : archive.entries()) {
+                // An order in both tiers was moved back to hot before a crash; hot wins
+                if (!ordersById.containsKey(entry.id)) {
+                    index.add(new OrderIndex.Key(entry.createdAt, entry.id), entry.userId, entry.status);
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private void saveOrders() throws IOException {
+        List<Order> orders = new ArrayList<>(ordersById.size());
+        Iterator<OrderIndex.Key> oldestFirst = index.all().descendingIterator();
+        while (oldestFirst.hasNext()) {
+            Order order = ordersById.get(oldestFirst.next().id);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
         String json = JsonUtil.toJson(orders);
         FileUtil.writeFile(ORDERS_FILE, json);
     }
 
-    public Order createOrder(String userId, List<OrderItem> items, double totalAmount,
-                            String shippingAddress, String phone) throws IOException {
-        List<Order> orders = loadOrders();
-        Order order = new Order(userId, items, totalAmount, shippingAddress, phone);
-        orders.add(order);
-        saveOrders(orders);
-
-        BookService bookService = BookService.getInstance();
-        for (OrderItem item : items) {
-            bookService.updateStock(item.getBookId(), item.getQuantity());
+    /** Hot tier first, then the archive. */
+    private Order find(String orderId) throws IOException {
+        Order order = ordersById.get(orderId);
+        if (order == null && archive.contains(orderId)) {
+            order = archive.get(orderId);
         }
+        return order;
+    }
+
+    private static OrderIndex.Key keyOf(Order order) {
+        return new OrderIndex.Key(order.getCreatedAt(), order.getId());
+    }
 
+    /**
+     * Persist a new order and publish an OrderCreated event. Creating an order that already
+     * exists is a no-op, which lets checkout recovery replay it safely.
+     */
+    public Order createOrder(Order order) throws IOException {
+        ensureLoaded();
+        synchronized (this) {
+            Order existing = ordersById.get(order.getId());
+            if (existing != null) {
+                return existing;
+            }
+            ordersById.put(order.getId(), order);
+            index.add(keyOf(order), order.getUserId(), order.getStatus());
+            try {
+                saveOrders();
+            } catch (IOException e) {
+                ordersById.remove(order.getId());
+                index.remove(keyOf(order), order.getUserId(), order.getStatus());
+                throw e;
+            }
+            // Published under the lock so consumers see each order's events in order
+            OrderEventBus.getInstance().publish(OrderEvent.created(order));
+        }
         return order;
     }
 
     public List<Order> getOrdersByUserId(String userId) throws IOException {
-        List<Order> orders = loadOrders();
-        return orders.stream()
-            .filter(o -> o.getUserId().equals(userId))
-            .collect(Collectors.toList());
+        ensureLoaded();
+        List<Order> orders = new ArrayList<>();
+        for (OrderIndex.Key key : index.forUser(userId)) {
+            Order order = find(key.id);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * One page of a customer's order history, newest first. Walks the user's own index
+     * from the cursor, so the cost depends on the page size only.
+     */
+    public Map<String, Object> getOrdersByUserId(String userId, String cursor, int limit) throws IOException {
+        return queryOrders(null, userId, null, null, cursor, limit);
     }
 
     public Order getOrderById(String orderId) throws IOException {
-        List<Order> orders = loadOrders();
-        return orders.stream()
-            .filter(o -> o.getId().equals(orderId))
-            .findFirst()
-            .orElse(null);
+        ensureLoaded();
+        return find(orderId);
     }
 
     public List<Order> getAllOrders() throws IOException {
-        return loadOrders();
+        ensureLoaded();
+        List<Order> orders = new ArrayList<>();
+        for (OrderIndex.Key key : index.all()) {
+            Order order = find(key.id);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Orders created at or after {@code from}, newest first. Walks the creation index only
+     * as far back as needed.
+     */
+    public List<Order> getOrdersCreatedSince(long from) throws IOException {
+        ensureLoaded();
+        List<Order> orders = new ArrayList<>();
+        for (OrderIndex.Key key : index.all()) {
+            if (key.createdAt < from) {
+                break;
+            }
+            Order order = find(key.id);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Ids of the orders currently in a status, read from the index so archived orders are
+     * not loaded.
+     */
+    public List<String> getOrderIdsByStatus(String status) throws IOException {
+        ensureLoaded();
+        List<String> ids = new ArrayList<>();
+        for (OrderIndex.Key key : index.forStatus(status)) {
+            ids.add(key.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Newest-first page of orders matching every given filter (null means "any").
+     * The most selective index (user, then status, then creation time) drives the walk.
+     * @param from inclusive lower bound on createdAt, or null
+     * @param to inclusive upper bound on createdAt, or null
+     * @param cursor the nextCursor of the previous page, or null for the first page
+     * @return map with "orders" and "nextCursor" (null when there are no further pages)
+     */
+    public Map<String, Object> queryOrders(String status, String userId, Long from, Long to,
+                                           String cursor, int limit) throws IOException {
+        ensureLoaded();
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        NavigableSet<OrderIndex.Key> source = userId != null ? index.forUser(userId)
+            : status != null ? index.forStatus(status)
+            : index.all();
+
+        OrderIndex.Key start = cursor == null ? null : OrderIndex.Key.parse(cursor);
+        boolean inclusive = false;
+        if (to != null) {
+            OrderIndex.Key toKey = new OrderIndex.Key(to, "");
+            if (start == null || OrderIndex.NEWEST_FIRST.compare(toKey, start) > 0) {
+                start = toKey;
+                inclusive = true;
+            }
+        }
+        Iterable<OrderIndex.Key> view = start == null ? source : source.tailSet(start, inclusive);
+
+        List<Order> page = new ArrayList<>(pageSize);
+        String nextCursor = null;
+        for (OrderIndex.Key key : view) {
+            if (from != null && key.createdAt < from) {
+                break;
+            }
+            Order order = find(key.id);
+            if (order == null
+                    || (status != null && !status.equals(order.getStatus()))
+                    || (userId != null && !userId.equals(order.getUserId()))) {
+                continue;
+            }
+            page.add(order);
+            if (page.size() == pageSize) {
+                nextCursor = key.toCursor();
+                break;
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("orders", page);
+        result.put("nextCursor", nextCursor);
+        return result;
+    }
+
+    /**
+     * Move orders in a terminal status (completed or cancelled) that are older than
+     * {@code minAgeMillis} into the archive. Their index keys stay, so listings and
+     * lookups are unchanged; only orders.json shrinks.
+     * @return number of orders archived
+     */
+    public int archiveOrders(long minAgeMillis) throws IOException {
+        ensureLoaded();
+        long cutoff = System.currentTimeMillis() - minAgeMillis;
+        synchronized (this) {
+            List<Order> archivable = new ArrayList<>();
+            for (Order order : ordersById.values()) {
+                if (order.getCreatedAt() < cutoff && TERMINAL_STATUSES.contains(order.getStatus())) {
+                    archivable.add(order);
+                }
+            }
+            if (archivable.isEmpty()) {
+                return 0;
+            }
+            archive.add(archivable);
+            for (Order order : archivable) {
+                ordersById.remove(order.getId());
+            }
+            try {
+                saveOrders();
+            } catch (IOException e) {
+                // Still archived as well; the hot copy wins until the next run
+                for (Order order : archivable) {
+                    ordersById.put(order.getId(), order);
+                }
+                throw e;
+            }
+            return archivable.size();
+        }
     }
 
     public Order updateOrderStatus(String orderId, String status) throws IOException {
-        List<Order> orders = loadOrders();
-        for (Order order : orders) {
-            if (order.getId().equals(orderId)) {
-                order.setStatus(status);
-                saveOrders(orders);
-                return order;
+        Map<String, String> updates = new HashMap<>();
+        updates.put(orderId, status);
+        List<Order> updated = updateOrderStatuses(updates);
+        if (updated.isEmpty()) {
+            throw new IllegalArgumentException("Order not found");
+        }
+        return updated.get(0);
+    }
+
+    /**
+     * Apply many status transitions and persist them with a single write.
+     * @param updates order id to new status
+     * @return the orders that were found and updated; unknown ids are skipped
+     */
+    public List<Order> updateOrderStatuses(Map<String, String> updates) throws IOException {
+        ensureLoaded();
+        List<Order> updated = new ArrayList<>();
+        List<String> oldStatuses = new ArrayList<>();
+        List<String> unarchived = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, String> entry : updates.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                Order order = ordersById.get(entry.getKey());
+                if (order == null && archive.contains(entry.getKey())) {
+                    // A changed order is live again: move it back to the hot tier
+                    order = archive.get(entry.getKey());
+                    if (order != null) {
+                        ordersById.put(order.getId(), order);
+                        unarchived.add(order.getId());
+                    }
+                }
+                if (order == null) {
+                    continue;
+                }
+                String oldStatus = order.getStatus();
+                order.setStatus(entry.getValue());
+                index.changeStatus(keyOf(order), oldStatus, entry.getValue());
+                updated.add(order);
+                oldStatuses.add(oldStatus);
+            }
+            if (!updated.isEmpty()) {
+                try {
+                    saveOrders();
+                } catch (IOException e) {
+                    for (int i = 0; i < updated.size(); i++) {
+                        Order order = updated.get(i);
+                        index.changeStatus(keyOf(order), order.getStatus(), oldStatuses.get(i));
+                        order.setStatus(oldStatuses.get(i));
+                    }
+                    unarchived.forEach(ordersById::remove);
+                    throw e;
+                }
+                archive.forget(unarchived);
+            }
+            for (int i = 0; i < updated.size(); i++) {
+                OrderEventBus.getInstance().publish(OrderEvent.statusChanged(updated.get(i), oldStatuses.get(i)));
             }
         }
-        throw new IllegalArgumentException("Order not found");
+        return updated;
     }
 }
@@ -0,0 +1,85 @@
+package com.bookgetter.services;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of book query results, keyed by the normalized query and filters.
+ * Each entry is tagged with the catalog version it was computed from and is dropped on
+ * lookup once the catalog has moved on. Results are stored as row numbers, so the size
+ * bound counts rows as well as entries.
+ */
+class SearchCache {
+    private static final int MAX_ENTRIES = 1000;
+    private static final long MAX_ROWS = 2_000_000;
+
+    static class Result {
+        final long version;
+        final int[] rows;
+        final int total;
+        final Map<String, Object> facets;
+
+        Result(long version, int[] rows, int total, Map<String, Object> facets) {
+            this.version = version;
+            this.rows = rows;
+            this.total = total;
+            this.facets = facets;
+        }
+    }
+
+    private final Map<String, Result> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRows;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    synchronized Result get(String key, long version) {
+        Result result = entries.get(key);
+        if (result != null && result.version != version) {
+            remove(key);
+            result = null;
+        }
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    synchronized void put(String key, Result result) {
+        if (result.rows.length > MAX_ROWS) {
+            return;
+        }
+        remove(key);
+        entries.put(key, result);
+        cachedRows += result.rows.length;
+        Iterator<Result> eldest = entries.values().iterator();
+        while (entries.size() > MAX_ENTRIES || cachedRows > MAX_ROWS) {
+            cachedRows -= eldest.next().rows.length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long lookups = hits + misses;
+        stats.put("entries", entries.size());
+        stats.put("cachedRows", cachedRows);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return stats;
+    }
+
+    private void remove(String key) {
+        Result removed = entries.remove(key);
+        if (removed != null) {
+            cachedRows -= removed.rows.length;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fan-out of stock and price changes to live subscribers (the browser event streams).
+ * Changes are published by the catalog writer after the new version is visible, so
+ * subscribers must only record them and return; anything slow happens elsewhere.
+ */
+public class StockFeed {
+    private static StockFeed instance;
+
+    public interface Subscriber {
+        void onChange(long version, String bookId, int stock, double price);
+    }
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private StockFeed() {}
+
+    public static synchronized StockFeed getInstance() {
+        if (instance == null) {
+            instance = new StockFeed();
+        }
+        return instance;
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    void publish(long version, Book book) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.onChange(version, book.getId(), book.getStock(), book.getPrice());
+        }
+    }
+}
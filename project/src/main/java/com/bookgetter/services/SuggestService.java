@@ -0,0 +1,479 @@
+package com.bookgetter.services;
+
+import com.bookgetter.events.OrderEvent;
+import com.bookgetter.events.OrderEventListener;
+import com.bookgetter.models.Book;
+import com.bookgetter.models.OrderItem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Search-as-you-type suggestions: book titles and authors for a typed prefix, most sold
+ * first. Every title and author is entered once per word, so "gats" finds "The Great
+ * Gatsby". The keys live in a burst trie. A subtree with few keys stays one bucket that is
+ * filtered at lookup, and a bucket splits into child nodes once it outgrows
+ * {@value #BUCKET_SIZE} keys. Each node keeps the best {@value #TOP_N} suggestions of its
+ * subtree, so a lookup walks down the prefix and never searches below it.
+ * <p>
+ * Book changes and sales only touch the paths of the affected keys. Each node on those
+ * paths re-merges its top list from its own keys and its children's lists, bottom up.
+ * Writers are serialized. A node's state is swapped as a whole, so readers never lock.
+ * <p>
+ * The index is built on its own thread at startup and suggests nothing until it is ready.
+ * Changes made meanwhile are held back and applied once it is.
+ */
+public class SuggestService implements OrderEventListener {
+    public static final int TOP_N = 10;
+    private static final int BUCKET_SIZE = 16;
+    private static final int MAX_DEPTH = 32;
+    private static final Suggestion[] NONE = new Suggestion[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final Comparator<Suggestion> RANKING = Comparator
+        .comparingLong((Suggestion s) -> -s.weight)
+        .thenComparing(s -> s.text);
+    private static SuggestService instance;
+
+    /** One title or author. Replaced, never modified, when its weight changes. */
+    private static final class Suggestion {
+        final String type;
+        final String text;
+        final String bookId;
+        final long weight;
+
+        Suggestion(String type, String text, String bookId, long weight) {
+            this.type = type;
+            this.text = text;
+            this.bookId = bookId;
+            this.weight = weight;
+        }
+    }
+
+    /** A suggestion under one of its keys (the normalized text from one word on). */
+    private static final class Entry {
+        final String key;
+        final Suggestion suggestion;
+
+        Entry(String key, Suggestion suggestion) {
+            this.key = key;
+            this.suggestion = suggestion;
+        }
+    }
+
+    /**
+     * Everything a reader needs from a node. A leaf holds all keys of its subtree as a
+     * bucket; an inner node holds only the keys that end at it.
+     */
+    private static final class State {
+        static final State EMPTY = new State(new char[0], new Node[0], NO_ENTRIES, NONE);
+
+        final char[] keys;
+        final Node[] children;
+        final Entry[] entries;
+        final Suggestion[] top;
+
+        State(char[] keys, Node[] children, Entry[] entries, Suggestion[] top) {
+            this.keys = keys;
+            this.children = children;
+            this.entries = entries;
+            this.top = top;
+        }
+
+        boolean isBucket() {
+            return children.length == 0;
+        }
+    }
+
+    private static final class Node {
+        volatile State state = State.EMPTY;
+    }
+
+    private final Node root = new Node();
+    /** The normalized author of each indexed book; its title is in {@link #titles}. */
+    private final Map<String, String> bookAuthors = new HashMap<>();
+    private final Map<String, Suggestion> titles = new HashMap<>();
+    private final Map<String, Suggestion> authors = new HashMap<>();
+    private final Map<String, Integer> authorTitles = new HashMap<>();
+    private final Map<String, Long> unitsSold = new HashMap<>();
+    /** Changes that arrived before the index was ready, or null once it is (or failed). */
+    private List<Runnable> held = new ArrayList<>();
+    private boolean initialized;
+
+    private SuggestService() {}
+
+    public static synchronized SuggestService getInstance() {
+        if (instance == null) {
+            instance = new SuggestService();
+        }
+        return instance;
+    }
+
+    /**
+     * Start indexing the catalog in the background, weighted by all-time units sold. Call
+     * after the best-seller counters have been replayed.
+     */
+    public void init() {
+        Thread thread = new Thread(() -> {
+            long started = System.currentTimeMillis();
+            try {
+                Node built = index();
+                int count;
+                synchronized (this) {
+                    root.state = built.state;
+                    initialized = true;
+                    for (Runnable change : held) {
+                        change.run();
+                    }
+                    held = null;
+                    count = titles.size();
+                }
+                System.out.println("[BookGetter] Search suggestions ready ("
+                    + count + " titles, " + (System.currentTimeMillis() - started) + " ms)");
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    held = null;
+                }
+                System.out.println("[BookGetter] Failed to build search suggestions: " + e.getMessage());
+            }
+        }, "bookgetter-suggest-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Fill the maps and build the trie off to the side. Nothing else touches the maps
+     * until {@link #initialized} is set under the lock.
+     */
+    private Node index() throws IOException {
+        BestsellerService bestsellers = BestsellerService.getInstance();
+        for (Book book : BookService.getInstance().getAllBooks()) {
+            long units = bestsellers.getUnitsSold(book.getId());
+            unitsSold.put(book.getId(), units);
+            if (book.getTitle() != null) {
+                titles.put(book.getId(), new Suggestion("title", book.getTitle(), book.getId(), units));
+            }
+            String authorKey = normalize(book.getAuthor());
+            bookAuthors.put(book.getId(), authorKey);
+            if (!authorKey.isEmpty()) {
+                Suggestion old = authors.get(authorKey);
+                authors.put(authorKey, new Suggestion("author", old != null ? old.text : book.getAuthor(), null,
+                    (old != null ? old.weight : 0) + units));
+                authorTitles.merge(authorKey, 1, Integer::sum);
+            }
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Map<String, Suggestion> suggestions : List.of(titles, authors)) {
+            for (Suggestion suggestion : suggestions.values()) {
+                for (String key : keys(suggestion.text)) {
+                    entries.add(new Entry(key, suggestion));
+                }
+            }
+        }
+        Node built = new Node();
+        built.state = build(entries, 0);
+        return built;
+    }
+
+    /**
+     * Up to {@code limit} suggestions for the prefix, each with "type" ("title" or
+     * "author") and "text", and "bookId" for titles.
+     */
+    public List<Map<String, Object>> suggest(String prefix, int limit) {
+        if (limit < 1 || limit > TOP_N) {
+            throw new IllegalArgumentException("limit must be between 1 and " + TOP_N);
+        }
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Suggestion[] found = NONE;
+        Node node = root;
+        for (int depth = 0; ; depth++) {
+            State state = node.state;
+            if (depth == key.length()) {
+                found = state.top;
+                break;
+            }
+            if (state.isBucket()) {
+                found = rank(state.entries, key);
+                break;
+            }
+            int i = Arrays.binarySearch(state.keys, key.charAt(depth));
+            if (i < 0) {
+                break;
+            }
+            node = state.children[i];
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < found.length && i < limit; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("type", found[i].type);
+            row.put("text", found[i].text);
+            if (found[i].bookId != null) {
+                row.put("bookId", found[i].bookId);
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    public synchronized void onBookAdded(Book book) {
+        onBookUpdated(book);
+    }
+
+    /** Also used for added books, since one added while indexing may already be indexed. */
+    public synchronized void onBookUpdated(Book book) {
+        if (hold(() -> onBookUpdated(book))) {
+            return;
+        }
+        remove(book.getId());
+        add(book.getId(), book.getTitle(), book.getAuthor());
+    }
+
+    public synchronized void onBookDeleted(String bookId) {
+        if (hold(() -> onBookDeleted(bookId))) {
+            return;
+        }
+        remove(bookId);
+        unitsSold.remove(bookId);
+    }
+
+    /**
+     * Raise the weight of the ordered books (and their authors) by the units sold.
+     */
+    @Override
+    public synchronized void onEvents(List<OrderEvent> events) {
+        if (hold(() -> onEvents(events))) {
+            return;
+        }
+        Map<String, Long> sold = new HashMap<>();
+        for (OrderEvent event : events) {
+            if (event.getType() == OrderEvent.Type.CREATED) {
+                for (OrderItem item : event.getOrder().getItems()) {
+                    sold.merge(item.getBookId(), (long) item.getQuantity(), Long::sum);
+                }
+            }
+        }
+        for (Map.Entry<String, Long> entry : sold.entrySet()) {
+            String bookId = entry.getKey();
+            String authorKey = bookAuthors.get(bookId);
+            if (authorKey != null) {
+                Suggestion title = titles.get(bookId);
+                Suggestion author = authors.get(authorKey);
+                remove(bookId);
+                unitsSold.merge(bookId, entry.getValue(), Long::sum);
+                add(bookId, title != null ? title.text : null, author != null ? author.text : null);
+            }
+        }
+    }
+
+    /**
+     * Queue a change that arrives before the index is ready, to be applied once it is.
+     * Returns false when the change should be applied now.
+     */
+    private boolean hold(Runnable change) {
+        if (initialized) {
+            return false;
+        }
+        if (held != null) {
+            held.add(change);
+        }
+        return true;
+    }
+
+    private void add(String bookId, String titleText, String authorText) {
+        String authorKey = normalize(authorText);
+        bookAuthors.put(bookId, authorKey);
+        long units = unitsSold.getOrDefault(bookId, 0L);
+        if (titleText != null) {
+            Suggestion title = new Suggestion("title", titleText, bookId, units);
+            titles.put(bookId, title);
+            place(titleText, title, null);
+        }
+        if (!authorKey.isEmpty()) {
+            Suggestion old = authors.get(authorKey);
+            Suggestion author = new Suggestion("author", old != null ? old.text : authorText, null,
+                (old != null ? old.weight : 0) + units);
+            authors.put(authorKey, author);
+            authorTitles.merge(authorKey, 1, Integer::sum);
+            place(author.text, author, old);
+        }
+    }
+
+    private void remove(String bookId) {
+        String authorKey = bookAuthors.remove(bookId);
+        if (authorKey == null) {
+            return;
+        }
+        Suggestion title = titles.remove(bookId);
+        if (title != null) {
+            place(title.text, null, title);
+        }
+        Suggestion old = authors.get(authorKey);
+        if (old != null) {
+            Suggestion author = null;
+            if (authorTitles.merge(authorKey, -1, Integer::sum) == 0) {
+                authors.remove(authorKey);
+                authorTitles.remove(authorKey);
+            } else {
+                author = new Suggestion("author", old.text, null, old.weight - unitsSold.getOrDefault(bookId, 0L));
+                authors.put(authorKey, author);
+            }
+            place(old.text, author, old);
+        }
+    }
+
+    /**
+     * Put {@code added} in place of {@code removed} (either may be null) under every key
+     * of {@code text}, re-ranking the nodes along each path.
+     */
+    private void place(String text, Suggestion added, Suggestion removed) {
+        for (String key : keys(text)) {
+            List<Node> path = pathTo(key);
+            int depth = path.size() - 1;
+            Node end = path.get(depth);
+            State state = end.state;
+            List<Entry> entries = new ArrayList<>(state.entries.length + 1);
+            for (Entry entry : state.entries) {
+                if (entry.suggestion != removed || !entry.key.equals(key)) {
+                    entries.add(entry);
+                }
+            }
+            if (added != null) {
+                entries.add(new Entry(key, added));
+            }
+            if (state.isBucket()) {
+                end.state = build(entries, depth);
+            } else {
+                end.state = ranked(new State(state.keys, state.children, entries.toArray(NO_ENTRIES), state.top));
+            }
+            for (int i = depth - 1; i >= 0; i--) {
+                path.get(i).state = ranked(path.get(i).state);
+            }
+        }
+    }
+
+    /** The normalized text from each word on: "the great gatsby", "great gatsby", "gatsby". */
+    private static List<String> keys(String text) {
+        String normalized = normalize(text);
+        List<String> keys = new ArrayList<>();
+        for (int start = 0; start < normalized.length(); start++) {
+            if (start == 0 || normalized.charAt(start - 1) == ' ') {
+                keys.add(normalized.substring(start));
+            }
+        }
+        return keys;
+    }
+
+    /** Nodes from the root down to the one that holds {@code key}, adding a branch if needed. */
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        for (int depth = 0; ; depth++) {
+            path.add(node);
+            State state = node.state;
+            if (state.isBucket() || depth == key.length()) {
+                return path;
+            }
+            char c = key.charAt(depth);
+            int i = Arrays.binarySearch(state.keys, c);
+            if (i >= 0) {
+                node = state.children[i];
+                continue;
+            }
+            int at = -i - 1;
+            char[] keys = new char[state.keys.length + 1];
+            Node[] children = new Node[state.children.length + 1];
+            System.arraycopy(state.keys, 0, keys, 0, at);
+            System.arraycopy(state.children, 0, children, 0, at);
+            keys[at] = c;
+            children[at] = new Node();
+            System.arraycopy(state.keys, at, keys, at + 1, state.keys.length - at);
+            System.arraycopy(state.children, at, children, at + 1, state.children.length - at);
+            node.state = new State(keys, children, state.entries, state.top);
+            node = children[at];
+        }
+    }
+
+    /**
+     * A ranked subtree for entries that share their first {@code depth} characters: one
+     * bucket if they fit, otherwise an inner node whose children split them by the next
+     * character. Children are complete before their parent can be published.
+     */
+    private static State build(List<Entry> entries, int depth) {
+        if (entries.size() <= BUCKET_SIZE || depth >= MAX_DEPTH) {
+            Entry[] bucket = entries.toArray(NO_ENTRIES);
+            return new State(new char[0], new Node[0], bucket, rank(bucket, null));
+        }
+        Map<Character, List<Entry>> byChar = new TreeMap<>();
+        List<Entry> ending = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.key.length() == depth) {
+                ending.add(entry);
+            } else {
+                byChar.computeIfAbsent(entry.key.charAt(depth), c -> new ArrayList<>()).add(entry);
+            }
+        }
+        char[] keys = new char[byChar.size()];
+        Node[] children = new Node[byChar.size()];
+        int i = 0;
+        for (Map.Entry<Character, List<Entry>> group : byChar.entrySet()) {
+            keys[i] = group.getKey();
+            children[i] = new Node();
+            children[i].state = build(group.getValue(), depth + 1);
+            i++;
+        }
+        return ranked(new State(keys, children, ending.toArray(NO_ENTRIES), NONE));
+    }
+
+    /** The state with its top list re-merged from its own entries and its children's lists. */
+    private static State ranked(State state) {
+        List<Suggestion> candidates = new ArrayList<>();
+        for (Entry entry : state.entries) {
+            candidates.add(entry.suggestion);
+        }
+        for (Node child : state.children) {
+            candidates.addAll(Arrays.asList(child.state.top));
+        }
+        return new State(state.keys, state.children, state.entries, best(candidates));
+    }
+
+    /** The best suggestions among the entries whose key starts with {@code prefix} (null for all). */
+    private static Suggestion[] rank(Entry[] entries, String prefix) {
+        List<Suggestion> candidates = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (prefix == null || entry.key.startsWith(prefix)) {
+                candidates.add(entry.suggestion);
+            }
+        }
+        return best(candidates);
+    }
+
+    private static Suggestion[] best(List<Suggestion> candidates) {
+        Set<Suggestion> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Suggestion> ranked = new ArrayList<>();
+        for (Suggestion suggestion : candidates) {
+            if (distinct.add(suggestion)) {
+                ranked.add(suggestion);
+            }
+        }
+        ranked.sort(RANKING);
+        return ranked.subList(0, Math.min(TOP_N, ranked.size())).toArray(NONE);
+    }
+
+    /** Lower-cased words separated by single spaces. */
+    private static String normalize(String text) {
+        return String.join(" ", TermIndex.words(text));
+    }
+}
@@ -0,0 +1,172 @@
+package com.bookgetter.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The words of every title and author, each with the rows it occurs in, arranged in a
+ * BK-tree keyed by Levenshtein distance. Finding the words within k edits of a query word
+ * only visits the subtrees whose edge distance lies within k of the distance to their
+ * parent, instead of comparing against every word in the catalog.
+ */
+final class TermIndex {
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final class Node {
+        final String term;
+        int[] rows = new int[2];
+        int rowCount;
+        int[] childDistances;
+        Node[] children;
+        int childCount;
+
+        Node(String term) {
+            this.term = term;
+        }
+
+        void addRow(int row) {
+            if (rowCount > 0 && rows[rowCount - 1] == row) {
+                return;
+            }
+            if (rowCount == rows.length) {
+                rows = Arrays.copyOf(rows, rowCount * 2);
+            }
+            rows[rowCount++] = row;
+        }
+
+        Node child(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (childDistances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            if (children == null) {
+                childDistances = new int[2];
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                childDistances = Arrays.copyOf(childDistances, childCount * 2);
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            childDistances[childCount] = distance;
+            children[childCount++] = child;
+        }
+    }
+
+    private final int size;
+    private Node root;
+
+    TermIndex(CatalogStore store) {
+        size = store.size();
+        Map<String, Node> nodes = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            for (String field : new String[] {store.title(row), store.author(row)}) {
+                for (String word : words(field)) {
+                    nodes.computeIfAbsent(word, Node::new).addRow(row);
+                }
+            }
+        }
+        for (Node node : nodes.values()) {
+            node.rows = Arrays.copyOf(node.rows, node.rowCount);
+            insert(node);
+        }
+    }
+
+    /** Lower-cased words of {@code text}, split on anything that is not a letter or digit. */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text != null) {
+            for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Rows containing a word within {@code maxEdits} of {@code word}: element d of the
+     * result holds the rows whose closest such word is exactly d edits away.
+     */
+    BitSet[] rowsByDistance(String word, int maxEdits) {
+        BitSet[] rows = new BitSet[maxEdits + 1];
+        for (int d = 0; d <= maxEdits; d++) {
+            rows[d] = new BitSet(size);
+        }
+        if (root == null) {
+            return rows;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(word, node.term);
+            if (distance <= maxEdits) {
+                for (int i = 0; i < node.rowCount; i++) {
+                    rows[distance].set(node.rows[i]);
+                }
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                if (Math.abs(node.childDistances[i] - distance) <= maxEdits) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+        for (int d = 1; d <= maxEdits; d++) {
+            for (int closer = 0; closer < d; closer++) {
+                rows[d].andNot(rows[closer]);
+            }
+        }
+        return rows;
+    }
+
+    private void insert(Node node) {
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node parent = root;
+        while (true) {
+            int distance = distance(node.term, parent.term);
+            Node child = parent.child(distance);
+            if (child == null) {
+                parent.addChild(distance, node);
+                return;
+            }
+            parent = child;
+        }
+    }
+
+    /** Levenshtein distance: insertions, deletions and substitutions each count one. */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,54 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.User;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of users keyed by id. Entries also expire after a short TTL so that
+ * changes written by another node are picked up without any cross-node messaging. Users
+ * are copied in and out, so a caller that edits its User never changes what other
+ * requests see.
+ */
+class UserCache {
+    private static final int MAX_ENTRIES = 1000;
+    private static final long TTL_MILLIS = 60 * 1000L;
+
+    private static class Entry {
+        final User user;
+        final long loadedAt;
+
+        Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    synchronized User get(String userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt > TTL_MILLIS) {
+            entries.remove(userId);
+            return null;
+        }
+        return new User(entry.user);
+    }
+
+    synchronized void put(User user) {
+        entries.put(user.getId(), new Entry(new User(user), System.currentTimeMillis()));
+    }
+
+    synchronized void invalidate(String userId) {
+        entries.remove(userId);
+    }
+}
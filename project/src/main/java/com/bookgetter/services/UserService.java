@@ -14,6 +14,7 @@ import java.util.Optional;
 public class UserService {
     private static final String USERS_FILE = "users.json";
     private static UserService instance;
+    private final UserCache userCache = new UserCache();
 
     private UserService() {}
 
@@ -63,6 +64,7 @@ public class UserService {
         User user = new User(username, password, email, role);
         users.add(user);
         saveUsers(users);
+        DashboardStats.getInstance().onUserRegistered(user);
         return user;
     }
 
@@ -75,23 +77,35 @@ public class UserService {
     }
 
     public User getUserById(String userId) throws IOException {
+        User cached = userCache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
         List<User> users = loadUsers();
-        return users.stream()
+        User user = users.stream()
             .filter(u -> u.getId().equals(userId))
             .findFirst()
             .orElse(null);
+        if (user != null) {
+            userCache.put(user);
+        }
+        return user;
     }
 
     public User updateUser(User user) throws IOException {
-        List<User> users = loadUsers();
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).getId().equals(user.getId())) {
-                users.set(i, user);
-                saveUsers(users);
-                return user;
+        try {
+            List<User> users = loadUsers();
+            for (int i = 0; i < users.size(); i++) {
+                if (users.get(i).getId().equals(user.getId())) {
+                    users.set(i, user);
+                    saveUsers(users);
+                    return user;
+                }
             }
+            throw new IllegalArgumentException("User not found");
+        } finally {
+            userCache.invalidate(user.getId());
         }
-        throw new IllegalArgumentException("User not found");
     }
 
     public List<User> getAllUsers() throws IOException {
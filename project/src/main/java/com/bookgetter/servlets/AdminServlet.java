@@ -1,6 +1,7 @@
 package com.bookgetter.servlets;
 
 import com.bookgetter.models.Book;
+import com.bookgetter.models.Order;
 import com.bookgetter.services.AdminService;
 import com.bookgetter.utils.JsonUtil;
 import com.bookgetter.utils.SessionUtil;
@@ -11,6 +12,9 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,16 +39,38 @@ public class AdminServlet extends HttpServlet {
             if (pathInfo == null || pathInfo.equals("/") || pathInfo.equals("/stats")) {
                 Map<String, Object> stats = adminService.getDashboardStats();
                 response.getWriter().write(JsonUtil.toJson(stats));
+            } else if (pathInfo.equals("/analytics")) {
+                handleAnalytics(request, response);
+            } else if (pathInfo.equals("/catalog")) {
+                response.getWriter().write(JsonUtil.toJson(adminService.getCatalogStats()));
             } else if (pathInfo.equals("/books")) {
                 List<Book> books = adminService.getAllBooks();
                 response.getWriter().write(JsonUtil.toJson(books));
             } else if (pathInfo.equals("/orders")) {
-                response.getWriter().write(JsonUtil.toJson(adminService.getAllOrders()));
+                if (isOrderQuery(request)) {
+                    String limit = request.getParameter("limit");
+                    Map<String, Object> page = adminService.queryOrders(
+                        emptyToNull(request.getParameter("status")),
+                        emptyToNull(request.getParameter("userId")),
+                        parseLong(request.getParameter("from")),
+                        parseLong(request.getParameter("to")),
+                        emptyToNull(request.getParameter("cursor")),
+                        limit == null ? 20 : Integer.parseInt(limit));
+                    response.getWriter().write(JsonUtil.toJson(page));
+                } else {
+                    response.getWriter().write(JsonUtil.toJson(adminService.getAllOrders()));
+                }
             } else if (pathInfo.equals("/users")) {
                 response.getWriter().write(JsonUtil.toJson(adminService.getAllUsers()));
             } else {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             Map<String, Object> result = new HashMap<>();
@@ -54,6 +80,61 @@ public class AdminServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Plain GET /orders keeps returning the full list; any filter or paging parameter
+     * switches to the indexed, paginated query.
+     */
+    private boolean isOrderQuery(HttpServletRequest request) {
+        for (String name : new String[] {"status", "userId", "from", "to", "cursor", "limit"}) {
+            if (request.getParameter(name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static Long parseLong(String value) {
+        return value == null || value.isEmpty() ? null : Long.parseLong(value);
+    }
+
+    private void handleAnalytics(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        String fromParam = request.getParameter("from");
+        String toParam = request.getParameter("to");
+        String category = request.getParameter("category");
+
+        LocalDate to;
+        LocalDate from;
+        try {
+            to = toParam == null || toParam.isEmpty() ? LocalDate.now() : LocalDate.parse(toParam);
+            from = fromParam == null || fromParam.isEmpty() ? to.minusDays(29) : LocalDate.parse(fromParam);
+        } catch (DateTimeParseException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", "Dates must be formatted as yyyy-MM-dd");
+            response.getWriter().write(JsonUtil.toJson(result));
+            return;
+        }
+
+        if (to.isBefore(from)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", "'to' must not be before 'from'");
+            response.getWriter().write(JsonUtil.toJson(result));
+            return;
+        }
+
+        Map<String, Object> analytics = adminService.getSalesAnalytics(from, to,
+            request.getParameter("granularity"), category == null || category.isEmpty() ? null : category);
+        response.getWriter().write(JsonUtil.toJson(analytics));
+    }
+
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -81,6 +162,12 @@ public class AdminServlet extends HttpServlet {
             } else {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             Map<String, Object> result = new HashMap<>();
@@ -113,6 +200,30 @@ public class AdminServlet extends HttpServlet {
                 result.put("success", true);
                 result.put("book", updated);
                 response.getWriter().write(JsonUtil.toJson(result));
+            } else if (pathInfo != null && pathInfo.equals("/orders")) {
+                Map<String, Map<String, String>> data = JsonUtil.fromJson(requestBody,
+                    new com.google.gson.reflect.TypeToken<Map<String, Map<String, String>>>(){}.getType());
+                Map<String, String> updates = data == null ? null : data.get("updates");
+                if (updates == null || updates.isEmpty()) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("success", false);
+                    result.put("message", "No status updates given");
+                    response.getWriter().write(JsonUtil.toJson(result));
+                    return;
+                }
+
+                List<Order> updated = adminService.updateOrderStatuses(updates);
+                List<String> notFound = new ArrayList<>(updates.keySet());
+                for (Order order : updated) {
+                    notFound.remove(order.getId());
+                }
+
+                Map<String, Object> result = new HashMap<>();
+                result.put("success", true);
+                result.put("updated", updated.size());
+                result.put("notFound", notFound);
+                response.getWriter().write(JsonUtil.toJson(result));
             } else if (pathInfo != null && pathInfo.startsWith("/orders/")) {
                 String orderId = pathInfo.substring("/orders/".length());
                 Map<String, String> data = JsonUtil.fromJson(requestBody,
@@ -127,6 +238,12 @@ public class AdminServlet extends HttpServlet {
             } else {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             Map<String, Object> result = new HashMap<>();
@@ -1,6 +1,7 @@
 package com.bookgetter.servlets;
 
 import com.bookgetter.models.Book;
+import com.bookgetter.services.BestsellerService;
 import com.bookgetter.services.BookService;
 import com.bookgetter.utils.JsonUtil;
 import jakarta.servlet.ServletException;
@@ -16,7 +17,10 @@ import java.util.Map;
 
 @WebServlet("/api/books")
 public class BookServlet extends HttpServlet {
+    private static final int DEFAULT_MAX_EDITS = 2;
+
     private BookService bookService = BookService.getInstance();
+    private BestsellerService bestsellerService = BestsellerService.getInstance();
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -28,8 +32,19 @@ public class BookServlet extends HttpServlet {
             String bookId = request.getParameter("id");
             String search = request.getParameter("search");
             String category = request.getParameter("category");
+            String bestsellers = request.getParameter("bestsellers");
+            String since = request.getParameter("since");
 
-            if (bookId != null) {
+            if (since != null) {
+                response.getWriter().write(JsonUtil.toJson(bookService.getChangesSince(Long.parseLong(since))));
+            } else if (bestsellers != null) {
+                String limit = request.getParameter("limit");
+                List<Map<String, Object>> topSellers = bestsellerService.getTopSellers(
+                    bestsellers.isEmpty() ? BestsellerService.WINDOW_ALL : bestsellers,
+                    category == null || category.isEmpty() ? null : category,
+                    limit == null ? 10 : Integer.parseInt(limit));
+                response.getWriter().write(JsonUtil.toJson(topSellers));
+            } else if (bookId != null) {
                 Book book = bookService.getBookById(bookId);
                 if (book != null) {
                     response.getWriter().write(JsonUtil.toJson(book));
@@ -40,16 +55,36 @@ public class BookServlet extends HttpServlet {
                     result.put("message", "Book not found");
                     response.getWriter().write(JsonUtil.toJson(result));
                 }
-            } else if (search != null && !search.isEmpty()) {
-                List<Book> books = bookService.searchBooks(search);
-                response.getWriter().write(JsonUtil.toJson(books));
-            } else if (category != null && !category.isEmpty()) {
-                List<Book> books = bookService.getBooksByCategory(category);
+            } else if ("true".equals(request.getParameter("facets"))) {
+                Map<String, Object> result = bookService.queryBooksWithFacets(
+                    emptyToNull(search),
+                    emptyToNull(category),
+                    parseDouble(request.getParameter("minPrice")),
+                    parseDouble(request.getParameter("maxPrice")),
+                    "true".equals(request.getParameter("inStock")),
+                    emptyToNull(request.getParameter("sort")),
+                    maxEdits(request));
+                response.getWriter().write(JsonUtil.toJson(result));
+            } else if (isFiltered(request)) {
+                List<Book> books = bookService.queryBooks(
+                    emptyToNull(search),
+                    emptyToNull(category),
+                    parseDouble(request.getParameter("minPrice")),
+                    parseDouble(request.getParameter("maxPrice")),
+                    "true".equals(request.getParameter("inStock")),
+                    emptyToNull(request.getParameter("sort")),
+                    maxEdits(request));
                 response.getWriter().write(JsonUtil.toJson(books));
             } else {
                 List<Book> books = bookService.getAllBooks();
                 response.getWriter().write(JsonUtil.toJson(books));
             }
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             Map<String, Object> result = new HashMap<>();
@@ -58,4 +93,31 @@ public class BookServlet extends HttpServlet {
             response.getWriter().write(JsonUtil.toJson(result));
         }
     }
+
+    private boolean isFiltered(HttpServletRequest request) {
+        for (String name : new String[] {"search", "category", "minPrice", "maxPrice", "inStock", "sort"}) {
+            String value = request.getParameter(name);
+            if (value != null && !value.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Typos tolerated per search word: none unless fuzzy=true, then maxEdits (default 2). */
+    private static int maxEdits(HttpServletRequest request) {
+        if (!"true".equals(request.getParameter("fuzzy"))) {
+            return 0;
+        }
+        String maxEdits = request.getParameter("maxEdits");
+        return maxEdits == null || maxEdits.isEmpty() ? DEFAULT_MAX_EDITS : Integer.parseInt(maxEdits);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static Double parseDouble(String value) {
+        return value == null || value.isEmpty() ? null : Double.parseDouble(value);
+    }
 }
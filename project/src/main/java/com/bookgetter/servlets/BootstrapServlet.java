@@ -0,0 +1,87 @@
+package com.bookgetter.servlets;
+
+import com.bookgetter.models.User;
+import com.bookgetter.services.BookService;
+import com.bookgetter.services.CartService;
+import com.bookgetter.services.CatalogSnapshot;
+import com.bookgetter.utils.JsonUtil;
+import com.bookgetter.utils.SessionUtil;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything a storefront page needs on load, in one request: "loggedIn" and "user" (as
+ * GET /api/login), "cart" with the badge summary for customers, and with
+ * {@code books=true} the catalog as GET /api/books returns it, plus its "version" for
+ * {@code since=} and the event stream. The catalog part is serialized once per version.
+ */
+@WebServlet("/api/bootstrap")
+public class BootstrapServlet extends HttpServlet {
+    private BookService bookService = BookService.getInstance();
+    private CartService cartService = CartService.getInstance();
+
+    private static class CatalogJson {
+        final long version;
+        final String json;
+
+        CatalogJson(long version, String json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    private volatile CatalogJson catalogJson;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        try {
+            User user = SessionUtil.getCurrentUser(request);
+            Map<String, Object> result = new HashMap<>();
+            result.put("loggedIn", user != null);
+            if (user != null) {
+                result.put("user", user);
+                if (!"admin".equals(user.getRole())) {
+                    result.put("cart", cartService.getCartSummary(user.getId()));
+                }
+            }
+            if (!"true".equals(request.getParameter("books"))) {
+                response.getWriter().write(JsonUtil.toCompactJson(result));
+                return;
+            }
+
+            CatalogJson catalog = catalogJson(bookService.getSnapshot());
+            result.put("version", catalog.version);
+            // Splice the cached catalog in as the last member instead of serializing it again
+            String json = JsonUtil.toCompactJson(result);
+            StringBuilder body = new StringBuilder(json.length() + catalog.json.length() + 16);
+            body.append(json, 0, json.length() - 1).append(",\"books\":").append(catalog.json).append('}');
+            response.getWriter().write(body.toString());
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
+        }
+    }
+
+    private CatalogJson catalogJson(CatalogSnapshot snapshot) {
+        CatalogJson cached = catalogJson;
+        if (cached == null || cached.version != snapshot.getVersion()) {
+            cached = new CatalogJson(snapshot.getVersion(), JsonUtil.toCompactJson(snapshot.getBooks()));
+            catalogJson = cached;
+        }
+        return cached;
+    }
+}
@@ -87,21 +87,18 @@ public class CartServlet extends HttpServlet {
                 return;
             }
 
-            if (book.getStock() < quantity) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                Map<String, Object> result = new HashMap<>();
-                result.put("success", false);
-                result.put("message", "Insufficient stock");
-                response.getWriter().write(JsonUtil.toJson(result));
-                return;
-            }
-
             Cart cart = cartService.addToCart(user.getId(), book, quantity);
 
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
             result.put("cart", cart);
             response.getWriter().write(JsonUtil.toJson(result));
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             Map<String, Object> result = new HashMap<>();
@@ -143,15 +140,6 @@ public class CartServlet extends HttpServlet {
                     response.getWriter().write(JsonUtil.toJson(result));
                     return;
                 }
-
-                if (quantity > book.getStock()) {
-                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("success", false);
-                    result.put("message", "Cannot add more items. Only " + book.getStock() + " remaining in stock.");
-                    response.getWriter().write(JsonUtil.toJson(result));
-                    return;
-                }
             }
 
             Cart cart = cartService.updateCartItem(user.getId(), bookId, quantity);
@@ -160,6 +148,12 @@ public class CartServlet extends HttpServlet {
             result.put("success", true);
             result.put("cart", cart);
             response.getWriter().write(JsonUtil.toJson(result));
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             Map<String, Object> result = new HashMap<>();
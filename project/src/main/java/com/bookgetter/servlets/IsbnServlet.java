@@ -0,0 +1,85 @@
+package com.bookgetter.servlets;
+
+import com.bookgetter.services.BookService;
+import com.bookgetter.utils.JsonUtil;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch ISBN lookup for partners: GET ?isbn=a,b,c or POST {"isbns": [...]}.
+ */
+@WebServlet("/api/books/isbn")
+public class IsbnServlet extends HttpServlet {
+    private BookService bookService = BookService.getInstance();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        respond(request, response);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        respond(request, response);
+    }
+
+    private void respond(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        try {
+            List<String> isbns;
+            if ("POST".equals(request.getMethod())) {
+                String requestBody = request.getReader().lines()
+                    .reduce("", (accumulator, actual) -> accumulator + actual);
+                Map<String, List<String>> data = JsonUtil.fromJson(requestBody,
+                    new TypeToken<Map<String, List<String>>>(){}.getType());
+                isbns = data == null ? null : data.get("isbns");
+            } else {
+                String isbn = request.getParameter("isbn");
+                isbns = isbn == null || isbn.isEmpty() ? null : Arrays.asList(isbn.split(","));
+            }
+            List<Map<String, Object>> results = bookService.lookupIsbns(isbns);
+            int found = 0;
+            for (Map<String, Object> entry : results) {
+                if (entry.get("book") != null) {
+                    found++;
+                }
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("results", results);
+            result.put("found", found);
+            response.getWriter().write(JsonUtil.toJson(result));
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
+        } catch (JsonSyntaxException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", "Expected {\"isbns\": [...]}");
+            response.getWriter().write(JsonUtil.toJson(result));
+        } catch (Exception e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
+        }
+    }
+}
@@ -56,7 +56,7 @@ public class LoginServlet extends HttpServlet {
                     return;
                 }
 
-                SessionUtil.setCurrentUser(request, user);
+                SessionUtil.setCurrentUser(request, response, user);
 
                 Map<String, Object> result = new HashMap<>();
                 result.put("success", true);
@@ -99,7 +99,7 @@ public class LoginServlet extends HttpServlet {
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        SessionUtil.removeCurrentUser(request);
+        SessionUtil.removeCurrentUser(request, response);
 
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
@@ -1,11 +1,10 @@
 package com.bookgetter.servlets;
 
-import com.bookgetter.models.Cart;
 import com.bookgetter.models.Order;
-import com.bookgetter.models.OrderItem;
 import com.bookgetter.models.User;
-import com.bookgetter.services.CartService;
+import com.bookgetter.services.CheckoutService;
 import com.bookgetter.services.OrderService;
+import com.bookgetter.utils.IdempotencyCache;
 import com.bookgetter.utils.JsonUtil;
 import com.bookgetter.utils.SessionUtil;
 import jakarta.servlet.ServletException;
@@ -15,15 +14,21 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @WebServlet("/api/orders")
 public class OrderServlet extends HttpServlet {
+    private static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    /** Not among the servlet API's status constants. */
+    private static final int SC_UNPROCESSABLE_CONTENT = 422;
+
     private OrderService orderService = OrderService.getInstance();
-    private CartService cartService = CartService.getInstance();
+    private CheckoutService checkoutService = CheckoutService.getInstance();
+    private IdempotencyCache checkoutResults = new IdempotencyCache(10000, 24 * 60 * 60 * 1000L);
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -60,10 +65,23 @@ public class OrderServlet extends HttpServlet {
                     result.put("message", "Order not found");
                     response.getWriter().write(JsonUtil.toJson(result));
                 }
+            } else if (request.getParameter("limit") != null || request.getParameter("cursor") != null) {
+                String limit = request.getParameter("limit");
+                String cursor = request.getParameter("cursor");
+                Map<String, Object> page = orderService.getOrdersByUserId(user.getId(),
+                    cursor == null || cursor.isEmpty() ? null : cursor,
+                    limit == null ? 10 : Integer.parseInt(limit));
+                response.getWriter().write(JsonUtil.toJson(page));
             } else {
                 List<Order> orders = orderService.getOrdersByUserId(user.getId());
                 response.getWriter().write(JsonUtil.toJson(orders));
             }
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             Map<String, Object> result = new HashMap<>();
@@ -89,59 +107,34 @@ public class OrderServlet extends HttpServlet {
             String requestBody = request.getReader().lines()
                 .reduce("", (accumulator, actual) -> accumulator + actual);
 
-            Map<String, String> data = JsonUtil.fromJson(requestBody,
-                new com.google.gson.reflect.TypeToken<Map<String, String>>(){}.getType());
-
-            String shippingAddress = data.get("shippingAddress");
-            String phone = data.get("phone");
-
-            if (shippingAddress == null || phone == null) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                Map<String, Object> result = new HashMap<>();
-                result.put("success", false);
-                result.put("message", "Shipping address and phone are required");
-                response.getWriter().write(JsonUtil.toJson(result));
-                return;
-            }
-
-            Cart cart = cartService.getOrCreateCart(user.getId());
-
-            if (cart.getItems().isEmpty()) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            String idempotencyKey = request.getHeader(IDEMPOTENCY_HEADER);
+            IdempotencyCache.CachedResponse outcome;
+            if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+                outcome = placeOrder(user, requestBody);
+            } else if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
                 Map<String, Object> result = new HashMap<>();
                 result.put("success", false);
-                result.put("message", "Cart is empty");
-                response.getWriter().write(JsonUtil.toJson(result));
-                return;
-            }
-
-            List<OrderItem> orderItems = new ArrayList<>();
-            for (var cartItem : cart.getItems()) {
-                OrderItem item = new OrderItem(
-                    cartItem.getBookId(),
-                    cartItem.getBookTitle(),
-                    cartItem.getBookAuthor(),
-                    cartItem.getPrice(),
-                    cartItem.getQuantity()
-                );
-                orderItems.add(item);
+                result.put("message", "Idempotency-Key is too long");
+                outcome = new IdempotencyCache.CachedResponse(HttpServletResponse.SC_BAD_REQUEST,
+                    JsonUtil.toJson(result));
+            } else {
+                AtomicBoolean executed = new AtomicBoolean(false);
+                outcome = checkoutResults.execute(user.getId() + ":" + idempotencyKey, requestBody, () -> {
+                    executed.set(true);
+                    return placeOrder(user, requestBody);
+                });
+                if (!executed.get()) {
+                    response.setHeader("Idempotent-Replayed", "true");
+                }
             }
 
-            double totalAmount = cart.getTotalAmount();
-
-            Order order = orderService.createOrder(
-                user.getId(),
-                orderItems,
-                totalAmount,
-                shippingAddress,
-                phone
-            );
-
-            cartService.clearCart(user.getId());
-
+            response.setStatus(outcome.getStatus());
+            response.getWriter().write(outcome.getBody());
+        } catch (IdempotencyCache.KeyReusedException e) {
+            response.setStatus(SC_UNPROCESSABLE_CONTENT);
             Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("order", order);
+            result.put("success", false);
+            result.put("message", e.getMessage());
             response.getWriter().write(JsonUtil.toJson(result));
         } catch (Exception e) {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -151,4 +144,40 @@ public class OrderServlet extends HttpServlet {
             response.getWriter().write(JsonUtil.toJson(result));
         }
     }
+
+    /**
+     * Runs the checkout and captures the response, so a retry carrying the same
+     * Idempotency-Key can be answered from the cache without running it again.
+     */
+    private IdempotencyCache.CachedResponse placeOrder(User user, String requestBody) throws IOException {
+        Map<String, String> data = JsonUtil.fromJson(requestBody,
+            new com.google.gson.reflect.TypeToken<Map<String, String>>(){}.getType());
+
+        String shippingAddress = data.get("shippingAddress");
+        String phone = data.get("phone");
+
+        if (shippingAddress == null || phone == null) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", "Shipping address and phone are required");
+            return new IdempotencyCache.CachedResponse(HttpServletResponse.SC_BAD_REQUEST,
+                JsonUtil.toJson(result));
+        }
+
+        Order order;
+        try {
+            order = checkoutService.checkout(user.getId(), shippingAddress, phone);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return new IdempotencyCache.CachedResponse(HttpServletResponse.SC_BAD_REQUEST,
+                JsonUtil.toJson(result));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("order", order);
+        return new IdempotencyCache.CachedResponse(HttpServletResponse.SC_OK, JsonUtil.toJson(result));
+    }
 }
@@ -54,7 +54,7 @@ public class RegisterServlet extends HttpServlet {
             }
 
             User user = userService.register(username, password, email, "customer");
-            SessionUtil.setCurrentUser(request, user);
+            SessionUtil.setCurrentUser(request, response, user);
 
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
@@ -0,0 +1,384 @@
+package com.bookgetter.servlets;
+
+import com.bookgetter.models.Book;
+import com.bookgetter.services.BookService;
+import com.bookgetter.services.StockFeed;
+import com.bookgetter.utils.JsonUtil;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent events with the stock and price of books as they change:
+ * {@code event: stock} carrying {@code [{"id", "stock", "price"}]}, with the catalog version
+ * as the event id. A browser that reconnects sends that id back and gets what it missed
+ * from the catalog change log; when that is not possible it gets {@code event: resync} and
+ * should reload what it shows.
+ *
+ * Connections are asynchronous and written with non-blocking I/O, so an idle one holds no
+ * thread. Each buffers at most {@link #MAX_PENDING} books, keeping only the latest stock
+ * and price per book, and one shared thread writes what has built up every
+ * {@link #COALESCE_MILLIS}. A client that falls that far behind is sent a resync instead.
+ *
+ * A peer that stops reading never fails a non-blocking write, it just never becomes ready
+ * again, and the async timeout is off so idle streams stay open. The heartbeat therefore
+ * closes a connection that has had data waiting for more than {@link #MAX_STALL_MILLIS}.
+ */
+@WebServlet(urlPatterns = "/api/books/events", asyncSupported = true)
+public class StockEventServlet extends HttpServlet {
+    private static final int MAX_CONNECTIONS = 10000;
+    private static final int MAX_PENDING = 1000;
+    private static final int MAX_BATCH = 200;
+    private static final long COALESCE_MILLIS = 250;
+    private static final long HEARTBEAT_MILLIS = 20 * 1000L;
+    private static final long RETRY_MILLIS = 3000;
+    private static final long MAX_STALL_MILLIS = 3 * HEARTBEAT_MILLIS;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    /** Places taken out of {@link #MAX_CONNECTIONS}, reserved before a connection is opened. */
+    private final AtomicInteger open = new AtomicInteger();
+    private final Queue<Connection> dirty = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService writer;
+
+    @Override
+    public void init() throws ServletException {
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bookgetter-stock-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::writeDirty, COALESCE_MILLIS, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+        writer.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        writer.shutdownNow();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (open.incrementAndGet() > MAX_CONNECTIONS) {
+            open.decrementAndGet();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", "Too many live connections, try again later");
+            response.getWriter().write(JsonUtil.toJson(result));
+            return;
+        }
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext async;
+        Connection connection;
+        try {
+            async = request.startAsync();
+            async.setTimeout(0);
+            connection = new Connection(async, response.getOutputStream());
+        } catch (IOException | RuntimeException e) {
+            open.decrementAndGet();
+            throw e;
+        }
+        async.addListener(connection);
+        connections.add(connection);
+        // Subscribe before reading the catalog so nothing published in between is lost
+        StockFeed.getInstance().subscribe(connection);
+        connection.getOutputStream().setWriteListener(connection);
+
+        long lastVersion = -1;
+        String lastEventId = request.getHeader("Last-Event-ID");
+        if (lastEventId != null) {
+            try {
+                lastVersion = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                lastVersion = -1;
+            }
+        }
+        connection.start(lastVersion);
+    }
+
+    private void writeDirty() {
+        Connection connection;
+        while ((connection = dirty.poll()) != null) {
+            connection.write();
+        }
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (Connection connection : connections) {
+            if (connection.heartbeat(now)) {
+                connection.close();
+            }
+        }
+    }
+
+    private static class Change {
+        final long version;
+        final int stock;
+        final double price;
+
+        Change(long version, int stock, double price) {
+            this.version = version;
+            this.stock = stock;
+            this.price = price;
+        }
+    }
+
+    private class Connection implements StockFeed.Subscriber, WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        /** Latest stock and price per book not yet written, in the order they first changed. */
+        private final Map<String, Change> pending = new LinkedHashMap<>();
+        private final StringBuilder control = new StringBuilder();
+        private long version;
+        private boolean resync;
+        private boolean queued;
+        private boolean unflushed;
+        private boolean idle = true;
+        private boolean closed;
+        /** Whether the last drain stopped because the socket would not take more. */
+        private boolean blocked;
+        /** When the connection last had nothing left to write. */
+        private long drainedAt = System.currentTimeMillis();
+
+        Connection(AsyncContext async, ServletOutputStream out) {
+            this.async = async;
+            this.out = out;
+        }
+
+        ServletOutputStream getOutputStream() {
+            return out;
+        }
+
+        /**
+         * Queue the opening of the stream: what changed since {@code lastVersion} when the
+         * browser is reconnecting, otherwise the current version.
+         */
+        void start(long lastVersion) {
+            BookService bookService = BookService.getInstance();
+            try {
+                if (lastVersion < 0) {
+                    long current = bookService.getSnapshot().getVersion();
+                    synchronized (this) {
+                        version = Math.max(version, current);
+                        control.append("retry: ").append(RETRY_MILLIS).append("\n")
+                            .append("id: ").append(current).append("\n")
+                            .append("event: hello\ndata: {\"version\":").append(current).append("}\n\n");
+                        queue();
+                    }
+                    return;
+                }
+                Map<String, Object> changes = bookService.getChangesSince(lastVersion);
+                long current = (Long) changes.get("version");
+                synchronized (this) {
+                    control.append("retry: ").append(RETRY_MILLIS).append("\n\n");
+                    if (Boolean.TRUE.equals(changes.get("full"))) {
+                        version = Math.max(version, current);
+                        resync = true;
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        List<Book> books = (List<Book>) changes.get("books");
+                        for (Book book : books) {
+                            onChange(current, book.getId(), book.getStock(), book.getPrice());
+                        }
+                    }
+                    queue();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    resync = true;
+                    queue();
+                }
+            }
+        }
+
+        /** Called by the catalog writer; only records the change. */
+        @Override
+        public synchronized void onChange(long changeVersion, String bookId, int stock, double price) {
+            if (closed) {
+                return;
+            }
+            version = Math.max(version, changeVersion);
+            if (resync) {
+                return;
+            }
+            Change previous = pending.get(bookId);
+            if (previous != null && previous.version > changeVersion) {
+                return;
+            }
+            if (previous == null && pending.size() >= MAX_PENDING) {
+                pending.clear();
+                resync = true;
+            } else {
+                pending.put(bookId, new Change(changeVersion, stock, price));
+            }
+            queue();
+        }
+
+        /** Queue a ping if nothing was written lately; true if the peer has stalled for too long. */
+        synchronized boolean heartbeat(long now) {
+            if (blocked && now - drainedAt > MAX_STALL_MILLIS) {
+                return true;
+            }
+            if (idle) {
+                control.append(": ping\n\n");
+                queue();
+            }
+            idle = true;
+            return false;
+        }
+
+        private void queue() {
+            if (!queued && !closed) {
+                queued = true;
+                dirty.add(this);
+            }
+        }
+
+        synchronized void write() {
+            queued = false;
+            drain();
+        }
+
+        @Override
+        public synchronized void onWritePossible() {
+            drain();
+        }
+
+        /**
+         * Write while the socket takes data without blocking. When it does not, the
+         * container calls {@link #onWritePossible} once it does, and changes keep
+         * coalescing in {@link #pending} meanwhile.
+         */
+        private void drain() {
+            try {
+                blocked = true;
+                while (!closed && out.isReady()) {
+                    String frame = nextFrame();
+                    if (frame == null) {
+                        if (!unflushed) {
+                            blocked = false;
+                            drainedAt = System.currentTimeMillis();
+                            return;
+                        }
+                        unflushed = false;
+                        out.flush();
+                        continue;
+                    }
+                    out.write(frame.getBytes(StandardCharsets.UTF_8));
+                    unflushed = true;
+                    idle = false;
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+        }
+
+        private String nextFrame() {
+            if (control.length() > 0) {
+                String frame = control.toString();
+                control.setLength(0);
+                return frame;
+            }
+            if (resync) {
+                resync = false;
+                pending.clear();
+                return "id: " + version + "\nevent: resync\ndata: {\"version\":" + version + "}\n\n";
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+            List<Map<String, Object>> batch = new ArrayList<>();
+            Iterator<Map.Entry<String, Change>> entries = pending.entrySet().iterator();
+            while (entries.hasNext() && batch.size() < MAX_BATCH) {
+                Map.Entry<String, Change> entry = entries.next();
+                Map<String, Object> change = new LinkedHashMap<>();
+                change.put("id", entry.getKey());
+                change.put("stock", entry.getValue().stock);
+                change.put("price", entry.getValue().price);
+                batch.add(change);
+                entries.remove();
+            }
+            // The id only moves on once everything up to it has been sent
+            String id = pending.isEmpty() ? "id: " + version + "\n" : "";
+            return id + "event: stock\ndata: " + JsonUtil.toCompactJson(batch) + "\n\n";
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending.clear();
+                control.setLength(0);
+            }
+            StockFeed.getInstance().unsubscribe(this);
+            connections.remove(this);
+            open.decrementAndGet();
+            try {
+                async.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.bookgetter.servlets;
+
+import com.bookgetter.services.SuggestService;
+import com.bookgetter.utils.JsonUtil;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@WebServlet("/api/suggest")
+public class SuggestServlet extends HttpServlet {
+    private SuggestService suggestService = SuggestService.getInstance();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        try {
+            String limit = request.getParameter("limit");
+            List<Map<String, Object>> suggestions = suggestService.suggest(
+                request.getParameter("q"),
+                limit == null || limit.isEmpty() ? SuggestService.TOP_N : Integer.parseInt(limit));
+            response.getWriter().write(JsonUtil.toJson(suggestions));
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            response.getWriter().write(JsonUtil.toJson(result));
+        }
+    }
+}
@@ -67,7 +67,6 @@ public class UserServlet extends HttpServlet {
             }
 
             User savedUser = userService.updateUser(currentUser);
-            SessionUtil.setCurrentUser(request, savedUser);
 
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
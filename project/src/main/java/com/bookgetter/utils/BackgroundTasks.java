@@ -0,0 +1,39 @@
+package com.bookgetter.utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One shared daemon thread for periodic housekeeping (expiring reservations, sweeping
+ * carts). Tasks must be short; a task that throws is logged and keeps its schedule.
+ */
+public class BackgroundTasks {
+    private static ScheduledExecutorService executor;
+
+    private BackgroundTasks() {}
+
+    public static synchronized void schedule(String name, Runnable task, long periodMillis) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bookgetter-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("[BookGetter] Background task " + name + " failed: " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
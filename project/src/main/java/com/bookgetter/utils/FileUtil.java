@@ -1,7 +1,11 @@
 package com.bookgetter.utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class FileUtil {
     private static String dataDir = null;
@@ -57,6 +61,54 @@ public class FileUtil {
         Files.write(path, content.getBytes("UTF-8"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 
+    /**
+     * Append to a file and force the bytes to the storage device before returning.
+     */
+    public static void appendFileDurably(String filename, String content) throws IOException {
+        Path path = Paths.get(getDataDir(), filename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes("UTF-8"));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    public static String readGzipFile(String filename) throws IOException {
+        Path path = Paths.get(getDataDir(), filename);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            return new String(in.readAllBytes(), "UTF-8");
+        }
+    }
+
+    /**
+     * Write a gzip-compressed file through a temporary file, so readers never see a
+     * partially written one. Parent directories are created as needed.
+     */
+    public static void writeGzipFile(String filename, String content) throws IOException {
+        Path path = Paths.get(getDataDir(), filename);
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+            out.write(content.getBytes("UTF-8"));
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void deleteFile(String filename) throws IOException {
+        Files.deleteIfExists(Paths.get(getDataDir(), filename));
+    }
+
+    public static long fileSize(String filename) throws IOException {
+        Path path = Paths.get(getDataDir(), filename);
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
     public static boolean fileExists(String filename) {
         return Files.exists(Paths.get(getDataDir(), filename));
     }
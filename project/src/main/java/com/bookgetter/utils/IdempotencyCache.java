@@ -0,0 +1,144 @@
+package com.bookgetter.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Remembers the response produced for an idempotency key so that a retried request gets
+ * the original response instead of executing again. Bounded in size, entries expire after
+ * a TTL, and a retry that arrives while the first attempt is still running waits for it.
+ * <p>
+ * A key is bound to the body of the request that first used it; reusing it with another
+ * body is refused. Only successful (2xx) responses are kept: anything else is handed to
+ * the retries already waiting and then forgotten, so a corrected request can run again.
+ */
+public class IdempotencyCache {
+    private static final long WAIT_SECONDS = 30;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public static class CachedResponse {
+        private final int status;
+        private final String body;
+
+        public CachedResponse(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() { return status; }
+        public String getBody() { return body; }
+    }
+
+    public interface Execution {
+        CachedResponse run() throws Exception;
+    }
+
+    /** The key was first used with a different request body. */
+    public static class KeyReusedException extends RuntimeException {
+        KeyReusedException() {
+            super("This idempotency key was already used with a different request");
+        }
+    }
+
+    private static class Entry {
+        final CompletableFuture<CachedResponse> result = new CompletableFuture<>();
+        final long createdAt = System.currentTimeMillis();
+        final byte[] requestHash;
+
+        Entry(byte[] requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+
+    public IdempotencyCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Run {@code execution} once per key and return its response to every caller with that key.
+     * If the execution throws or does not succeed, the key is forgotten so the client can
+     * retry for real.
+     * @throws KeyReusedException if the key was first used with a different {@code requestBody}
+     */
+    public CachedResponse execute(String key, String requestBody, Execution execution) throws Exception {
+        byte[] requestHash = hash(requestBody);
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            evictExpired();
+            entry = entries.get(key);
+            if (entry != null && !Arrays.equals(entry.requestHash, requestHash)) {
+                throw new KeyReusedException();
+            }
+            if (entry == null) {
+                entry = new Entry(requestHash);
+                entries.put(key, entry);
+                owner = true;
+                if (entries.size() > maxEntries) {
+                    Iterator<String> eldest = entries.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+
+        if (!owner) {
+            try {
+                return entry.result.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("A request with this idempotency key is still in progress");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("The original request with this idempotency key failed");
+            }
+        }
+
+        try {
+            CachedResponse response = execution.run();
+            if (response.getStatus() < 200 || response.getStatus() >= 300) {
+                synchronized (this) {
+                    entries.remove(key, entry);
+                }
+            }
+            entry.result.complete(response);
+            return response;
+        } catch (Exception e) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static byte[] hash(String requestBody) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(requestBody.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().createdAt >= cutoff) {
+                break;
+            }
+            it.remove();
+        }
+    }
+}
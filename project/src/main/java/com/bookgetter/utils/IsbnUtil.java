@@ -0,0 +1,72 @@
+package com.bookgetter.utils;
+
+import java.util.Locale;
+
+public class IsbnUtil {
+
+    /**
+     * The form ISBNs are compared in: separators removed, a valid ISBN-10 converted to its
+     * ISBN-13 (978 prefix, new check digit), anything else upper-cased as it is. Null for
+     * a blank value.
+     */
+    public static String normalize(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        String compact = isbn.replaceAll("[\\s-]", "").toUpperCase(Locale.ROOT);
+        if (compact.isEmpty()) {
+            return null;
+        }
+        if (isValidIsbn10(compact)) {
+            String isbn13 = "978" + compact.substring(0, 9);
+            return isbn13 + isbn13CheckDigit(isbn13);
+        }
+        return compact;
+    }
+
+    /**
+     * The normalized ISBN-13 as a number, or -1 if it is not 13 digits.
+     */
+    public static long toNumber(String normalized) {
+        if (normalized == null || normalized.length() != 13) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < 13; i++) {
+            char c = normalized.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isValidIsbn10(String isbn) {
+        if (isbn.length() != 10) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = isbn.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c == 'X' && i == 9) {
+                digit = 10;
+            } else {
+                return false;
+            }
+            sum += (10 - i) * digit;
+        }
+        return sum % 11 == 0;
+    }
+
+    private static char isbn13CheckDigit(String first12) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (first12.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+}
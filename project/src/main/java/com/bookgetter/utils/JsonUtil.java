@@ -8,11 +8,19 @@ import java.lang.reflect.Type;
 
 public class JsonUtil {
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final Gson compactGson = new Gson();
 
     public static String toJson(Object obj) {
         return gson.toJson(obj);
     }
 
+    /**
+     * Single-line JSON, for line-oriented logs.
+     */
+    public static String toCompactJson(Object obj) {
+        return compactGson.toJson(obj);
+    }
+
     public static <T> T fromJson(String json, Class<T> classOfT) {
         return gson.fromJson(json, classOfT);
     }
@@ -1,43 +1,122 @@
 package com.bookgetter.utils;
 
 import com.bookgetter.models.User;
+import com.bookgetter.services.UserService;
+import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 
 public class SessionUtil {
-    private static final String USER_SESSION_KEY = "currentUser";
+    private static final String USER_ID_SESSION_KEY = "currentUserId";
+    private static final String USER_ROLE_SESSION_KEY = "currentUserRole";
+    private static final String TOKEN_COOKIE = "BG_AUTH";
+    private static final String CLAIMS_REQUEST_KEY = "bookgetter.tokenClaims";
+    private static final String USER_REQUEST_KEY = "bookgetter.currentUser";
 
-    public static void setCurrentUser(HttpServletRequest request, User user) {
-        HttpSession session = request.getSession(true);
-        session.setAttribute(USER_SESSION_KEY, user);
+    private static volatile boolean stateless = false;
+    private static volatile TokenUtil tokenUtil;
+    private static volatile long tokenTtlMillis = 30 * 60 * 1000L;
+
+    /**
+     * Switch to stateless mode: the login is carried by an HMAC-signed cookie instead of
+     * the container HttpSession, so requests can be served by any node sharing the secret.
+     * @param secret shared signing secret; when empty a random one is generated for this node only
+     */
+    public static void enableStatelessMode(String secret, long ttlMillis) {
+        byte[] key;
+        if (secret == null || secret.isEmpty()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            System.out.println("[BookGetter] WARNING: no session secret configured, "
+                + "tokens will not be valid on other nodes or after restart");
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        tokenUtil = new TokenUtil(key);
+        tokenTtlMillis = ttlMillis;
+        stateless = true;
+    }
+
+    public static void setCurrentUser(HttpServletRequest request, HttpServletResponse response, User user) {
+        if (stateless) {
+            issueToken(request, response, user.getId(), user.getRole());
+        } else {
+            HttpSession session = request.getSession(true);
+            session.setAttribute(USER_ID_SESSION_KEY, user.getId());
+            session.setAttribute(USER_ROLE_SESSION_KEY, user.getRole());
+        }
+        request.setAttribute(USER_REQUEST_KEY, user);
     }
 
+    /**
+     * Resolve the logged-in user through UserService's id-keyed cache, so every request sees
+     * the current record rather than a copy taken at login.
+     */
     public static User getCurrentUser(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
-        if (session == null) {
+        User cached = (User) request.getAttribute(USER_REQUEST_KEY);
+        if (cached != null) {
+            return cached;
+        }
+        String userId = getCurrentUserId(request);
+        if (userId == null) {
+            return null;
+        }
+        try {
+            User user = UserService.getInstance().getUserById(userId);
+            if (user != null) {
+                request.setAttribute(USER_REQUEST_KEY, user);
+            }
+            return user;
+        } catch (IOException e) {
+            e.printStackTrace();
             return null;
         }
-        return (User) session.getAttribute(USER_SESSION_KEY);
     }
 
-    public static void removeCurrentUser(HttpServletRequest request) {
+    public static String getCurrentUserId(HttpServletRequest request) {
+        if (stateless) {
+            TokenUtil.Claims claims = getClaims(request);
+            return claims == null ? null : claims.getUserId();
+        }
+        HttpSession session = request.getSession(false);
+        return session == null ? null : (String) session.getAttribute(USER_ID_SESSION_KEY);
+    }
+
+    private static String getCurrentRole(HttpServletRequest request) {
+        if (stateless) {
+            TokenUtil.Claims claims = getClaims(request);
+            return claims == null ? null : claims.getRole();
+        }
+        HttpSession session = request.getSession(false);
+        return session == null ? null : (String) session.getAttribute(USER_ROLE_SESSION_KEY);
+    }
+
+    public static void removeCurrentUser(HttpServletRequest request, HttpServletResponse response) {
+        request.removeAttribute(USER_REQUEST_KEY);
+        if (stateless) {
+            writeTokenCookie(request, response, "", 0);
+            request.removeAttribute(CLAIMS_REQUEST_KEY);
+            return;
+        }
         HttpSession session = request.getSession(false);
         if (session != null) {
-            session.removeAttribute(USER_SESSION_KEY);
+            session.removeAttribute(USER_ID_SESSION_KEY);
+            session.removeAttribute(USER_ROLE_SESSION_KEY);
             session.invalidate();
         }
     }
 
     public static boolean isLoggedIn(HttpServletRequest request) {
-        return getCurrentUser(request) != null;
+        return getCurrentUserId(request) != null;
     }
 
     public static boolean isAdmin(HttpServletRequest request) {
-        User user = getCurrentUser(request);
-        return user != null && "admin".equals(user.getRole());
+        return "admin".equals(getCurrentRole(request));
     }
 
     public static boolean requireLogin(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -45,6 +124,7 @@ public class SessionUtil {
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Please login first");
             return false;
         }
+        refreshToken(request, response);
         return true;
     }
 
@@ -53,6 +133,62 @@ public class SessionUtil {
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Admin access required");
             return false;
         }
+        refreshToken(request, response);
         return true;
     }
+
+    private static TokenUtil.Claims getClaims(HttpServletRequest request) {
+        TokenUtil.Claims claims = (TokenUtil.Claims) request.getAttribute(CLAIMS_REQUEST_KEY);
+        if (claims != null) {
+            return claims;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (TOKEN_COOKIE.equals(cookie.getName())) {
+                claims = tokenUtil.verify(cookie.getValue());
+                if (claims != null) {
+                    request.setAttribute(CLAIMS_REQUEST_KEY, claims);
+                }
+                return claims;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sliding expiry: once half of the token lifetime has passed, a fresh token is issued
+     * so active users are not logged out mid-visit.
+     */
+    private static void refreshToken(HttpServletRequest request, HttpServletResponse response) {
+        if (!stateless) {
+            return;
+        }
+        TokenUtil.Claims claims = getClaims(request);
+        if (claims != null && claims.getExpiresAt() - System.currentTimeMillis() < tokenTtlMillis / 2) {
+            issueToken(request, response, claims.getUserId(), claims.getRole());
+        }
+    }
+
+    private static void issueToken(HttpServletRequest request, HttpServletResponse response,
+                                   String userId, String role) {
+        long expiresAt = System.currentTimeMillis() + tokenTtlMillis;
+        String token = tokenUtil.issue(userId, role, expiresAt);
+        writeTokenCookie(request, response, token, (int) (tokenTtlMillis / 1000));
+        request.setAttribute(CLAIMS_REQUEST_KEY, tokenUtil.verify(token));
+    }
+
+    private static void writeTokenCookie(HttpServletRequest request, HttpServletResponse response,
+                                         String value, int maxAgeSeconds) {
+        Cookie cookie = new Cookie(TOKEN_COOKIE, value);
+        String contextPath = request.getContextPath();
+        cookie.setPath(contextPath == null || contextPath.isEmpty() ? "/" : contextPath);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setMaxAge(maxAgeSeconds);
+        cookie.setAttribute("SameSite", "Lax");
+        response.addCookie(cookie);
+    }
 }
@@ -1,7 +1,7 @@
 let currentTab = 'stats';
 
 async function checkAdminAccess() {
-    const user = await checkAuth();
+    const { user } = await bootstrapPage();
     if (!user || user.role !== 'admin') {
         await showError('Admin access required');
         window.location.href = 'index.html';
@@ -47,13 +47,21 @@ async function loadAdminBooks() {
     }
 }
 
-async function loadAdminOrders() {
+let ordersCursor = null;
+
+async function loadAdminOrders(append = false) {
     try {
-        const response = await fetchAPI('/admin/orders');
-        const orders = await response.json();
+        const status = document.getElementById('order-status-filter').value;
+        const params = new URLSearchParams({ limit: 20 });
+        if (status) params.set('status', status);
+        if (append && ordersCursor) params.set('cursor', ordersCursor);
+
+        const response = await fetchAPI(`/admin/orders?${params}`);
+        const page = await response.json();
+        ordersCursor = page.nextCursor || null;
 
         const container = document.getElementById('orders-list');
-        container.innerHTML = orders.sort((a, b) => b.createdAt - a.createdAt).map(order => `
+        const html = page.orders.map(order => `
             <div class="admin-item">
                 <div class="admin-item-info">
                     <h4>Order #${order.id.substring(0, 8)}</h4>
@@ -71,6 +79,12 @@ async function loadAdminOrders() {
                 </div>
             </div>
         `).join('');
+        if (append) {
+            container.insertAdjacentHTML('beforeend', html);
+        } else {
+            container.innerHTML = html;
+        }
+        document.getElementById('orders-more').style.display = ordersCursor ? 'flex' : 'none';
     } catch (error) {
         console.error('Failed to load orders:', error);
     }
@@ -240,6 +254,9 @@ document.addEventListener('DOMContentLoaded', async () => {
 
     document.getElementById('add-book-btn').addEventListener('click', () => showBookModal());
 
+    document.getElementById('order-status-filter').addEventListener('change', () => loadAdminOrders());
+    document.getElementById('orders-more-btn').addEventListener('click', () => loadAdminOrders(true));
+
     document.querySelector('.modal-close').addEventListener('click', closeBookModal);
 
     document.getElementById('upload-image-btn').addEventListener('click', uploadImage);
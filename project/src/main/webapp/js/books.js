@@ -1,15 +1,51 @@
-let allBooks = [];
-let filteredBooks = [];
 let currentUser = null;
+let authChecked = false;
+let currentCategory = 'all';
+let suggestTimer = null;
+
+/**
+ * Filtering, price ranges and sorting run on the server; this builds the query
+ * from the current controls.
+ */
+function buildBooksQuery() {
+    const params = new URLSearchParams();
+    const search = document.getElementById('search-input').value.trim();
+    const minPrice = document.getElementById('min-price').value;
+    const maxPrice = document.getElementById('max-price').value;
+    const sort = document.getElementById('sort-select').value;
+
+    if (search) {
+        params.set('search', search);
+        params.set('fuzzy', 'true');
+    }
+    if (currentCategory !== 'all') params.set('category', currentCategory);
+    if (minPrice) params.set('minPrice', minPrice);
+    if (maxPrice) params.set('maxPrice', maxPrice);
+    if (document.getElementById('in-stock').checked) params.set('inStock', 'true');
+    if (sort) params.set('sort', sort);
+
+    const query = params.toString();
+    return query ? `/books?${query}` : '/books';
+}
 
 async function loadBooks() {
     try {
         document.getElementById('loading').style.display = 'block';
-        currentUser = await checkAuth();
-        const response = await fetchAPI('/books');
-        allBooks = await response.json();
-        filteredBooks = allBooks;
-        displayBooks(filteredBooks);
+        const query = buildBooksQuery();
+        if (!authChecked) {
+            const data = await bootstrapPage();
+            currentUser = data.user || null;
+            authChecked = true;
+            // The first, unfiltered page came with the bootstrap response
+            if (query === '/books' && Array.isArray(data.books)) {
+                displayBooks(data.books);
+                document.getElementById('loading').style.display = 'none';
+                return;
+            }
+        }
+        const response = await fetchAPI(query);
+        const books = await response.json();
+        displayBooks(Array.isArray(books) ? books : []);
         document.getElementById('loading').style.display = 'none';
     } catch (error) {
         console.error('Failed to load books:', error);
@@ -31,7 +67,7 @@ function displayBooks(books) {
 
     noResults.style.display = 'none';
     container.innerHTML = books.map(book => `
-        <div class="book-card">
+        <div class="book-card" data-book-id="${book.id}">
             <img src="${book.imageUrl}" alt="${book.title}" class="book-image" onerror="this.src='https://via.placeholder.com/300x450?text=No+Image'">
             <div class="book-info">
                 <h3 class="book-title">${book.title}</h3>
@@ -51,6 +87,17 @@ function displayBooks(books) {
     `).join('');
 }
 
+function applyStockChanges(changes) {
+    changes.forEach(change => {
+        const card = document.querySelector(`.book-card[data-book-id="${CSS.escape(change.id)}"]`);
+        if (!card) return;
+        card.querySelector('.book-price').textContent = formatPrice(change.price);
+        card.querySelector('.book-stock').textContent = change.stock > 0 ? `${change.stock} in stock` : 'Out of stock';
+        const button = card.querySelector('button');
+        if (button) button.disabled = change.stock === 0;
+    });
+}
+
 async function addToCart(bookId) {
     const user = await checkAuth();
     if (!user) {
@@ -79,12 +126,8 @@ async function addToCart(bookId) {
 }
 
 function filterByCategory(category, buttonElement) {
-    if (category === 'all') {
-        filteredBooks = allBooks;
-    } else {
-        filteredBooks = allBooks.filter(book => book.category === category);
-    }
-    displayBooks(filteredBooks);
+    currentCategory = category;
+    loadBooks();
 
     document.querySelectorAll('.filter-btn').forEach(btn => {
         btn.classList.remove('active');
@@ -95,23 +138,40 @@ function filterByCategory(category, buttonElement) {
 }
 
 function searchBooks() {
-    const query = document.getElementById('search-input').value.toLowerCase();
-    if (!query) {
-        filteredBooks = allBooks;
-    } else {
-        filteredBooks = allBooks.filter(book =>
-            book.title.toLowerCase().includes(query) ||
-            book.author.toLowerCase().includes(query) ||
-            book.category.toLowerCase().includes(query)
-        );
-    }
-    displayBooks(filteredBooks);
+    loadBooks();
+}
+
+/**
+ * Search-as-you-type: after a short pause in typing, fill the input's datalist with
+ * title and author suggestions for what has been typed so far.
+ */
+function suggestBooks() {
+    clearTimeout(suggestTimer);
+    suggestTimer = setTimeout(async () => {
+        const prefix = document.getElementById('search-input').value.trim();
+        const list = document.getElementById('search-suggestions');
+        if (prefix.length < 2) {
+            list.innerHTML = '';
+            return;
+        }
+        try {
+            const response = await fetchAPI(`/suggest?q=${encodeURIComponent(prefix)}&limit=8`);
+            const suggestions = await response.json();
+            list.innerHTML = (Array.isArray(suggestions) ? suggestions : [])
+                .map(s => `<option value="${s.text.replace(/"/g, '&quot;')}">${s.type === 'author' ? 'Author' : 'Title'}</option>`)
+                .join('');
+        } catch (error) {
+            console.error('Failed to load suggestions:', error);
+        }
+    }, 150);
 }
 
 document.addEventListener('DOMContentLoaded', () => {
     loadBooks();
+    watchStock(applyStockChanges, loadBooks);
 
     document.getElementById('search-btn').addEventListener('click', searchBooks);
+    document.getElementById('search-input').addEventListener('input', suggestBooks);
     document.getElementById('search-input').addEventListener('keypress', (e) => {
         if (e.key === 'Enter') {
             searchBooks();
@@ -123,4 +183,8 @@ document.addEventListener('DOMContentLoaded', () => {
             filterByCategory(btn.dataset.category, btn);
         });
     });
+
+    ['min-price', 'max-price', 'in-stock', 'sort-select'].forEach(id => {
+        document.getElementById(id).addEventListener('change', loadBooks);
+    });
 });
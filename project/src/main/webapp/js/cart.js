@@ -1,7 +1,9 @@
 let cart = null;
+let checkoutKey = null;
+let stockRefreshTimer = null;
 
 async function loadCart() {
-    const user = await checkAuth();
+    const { user } = await bootstrapPage();
     if (!user) {
         window.location.href = 'login.html';
         return;
@@ -59,6 +61,26 @@ function displayCart() {
     updateSummary();
 }
 
+/**
+ * Available stock in the cart also depends on holds, so a change to a book in the cart
+ * reloads the cart (once per burst) rather than patching the numbers in place.
+ */
+function refreshCartStock(changes) {
+    if (!cart || !cart.items.some(item => !changes || changes.some(change => change.id === item.bookId))) {
+        return;
+    }
+    clearTimeout(stockRefreshTimer);
+    stockRefreshTimer = setTimeout(async () => {
+        try {
+            const response = await fetchAPI('/cart');
+            cart = await response.json();
+            displayCart();
+        } catch (error) {
+            console.error('Failed to refresh cart:', error);
+        }
+    }, 300);
+}
+
 function showEmptyCart() {
     document.getElementById('cart-empty').style.display = 'block';
     document.getElementById('cart-content').style.display = 'none';
@@ -165,27 +187,48 @@ async function checkout() {
         return;
     }
 
+    // Reused across retries of the same checkout so the server never places it twice
+    if (!checkoutKey) {
+        checkoutKey = window.crypto && crypto.randomUUID
+            ? crypto.randomUUID()
+            : `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+    }
+
+    // Called directly rather than through fetchAPI: the key may only be dropped once the
+    // server has definitely answered, i.e. a 2xx or 4xx with a JSON body. Network errors,
+    // timeouts, 5xx and proxy error pages all keep it, since the order may still be placed.
+    let response;
+    let data;
     try {
-        const response = await fetchAPI('/orders', {
+        response = await fetch(API_BASE + '/orders', {
             method: 'POST',
+            headers: { 'Content-Type': 'application/json', 'Idempotency-Key': checkoutKey },
             body: JSON.stringify({ shippingAddress: address, phone })
         });
+        data = await response.json();
+    } catch (error) {
+        console.error('API Error:', error);
+        await showError('Failed to place order, please try again: ' + error.message);
+        return;
+    }
 
-        const data = await response.json();
+    if (response.status >= 500) {
+        await showError('Failed to place order, please try again: ' + (data.message || 'Request failed'));
+        return;
+    }
+    checkoutKey = null;
 
-        if (data.success) {
-            await showSuccess('Order placed successfully!');
-            window.location.href = 'orders.html';
-        } else if (data.message) {
-            await showError(data.message);
-        }
-    } catch (error) {
-        await showError('Failed to place order: ' + error.message);
+    if (data.success) {
+        await showSuccess('Order placed successfully!');
+        window.location.href = 'orders.html';
+    } else if (data.message) {
+        await showError(data.message);
     }
 }
 
 document.addEventListener('DOMContentLoaded', () => {
     loadCart();
+    watchStock(refreshCartStock, () => refreshCartStock(null));
 
     document.getElementById('checkout-btn')?.addEventListener('click', checkout);
     document.getElementById('clear-cart-btn')?.addEventListener('click', clearCart);
@@ -22,44 +22,76 @@ async function fetchAPI(url, options = {}) {
     }
 }
 
+let pageBootstrap = null;
+
 async function checkAuth() {
     try {
         const response = await fetchAPI('/login');
-        const data = await response.json();
-
-        const navUser = document.getElementById('nav-user');
-        const navGuest = document.getElementById('nav-guest');
-        const adminLink = document.getElementById('admin-link');
-        const cartLink = document.getElementById('cart-link');
-        const ordersLinks = document.querySelectorAll('a[href="orders.html"]');
-
-        if (data.loggedIn) {
-            if (navUser) navUser.style.display = 'flex';
-            if (navGuest) navGuest.style.display = 'none';
-
-            if (data.user.role === 'admin') {
-                if (adminLink) adminLink.style.display = 'block';
-                if (cartLink) cartLink.style.display = 'none';
-                ordersLinks.forEach(link => link.style.display = 'none');
+        return applyAuth(await response.json());
+    } catch (error) {
+        console.error('Auth check failed:', error);
+        return null;
+    }
+}
+
+/**
+ * What every page needs on load, fetched once per page: the user and cart summary and,
+ * on the catalog page, the books as well. Resolves to the /api/bootstrap response.
+ */
+function bootstrapPage() {
+    if (!pageBootstrap) {
+        const query = document.getElementById('books-grid') ? '?books=true' : '';
+        pageBootstrap = fetchAPI('/bootstrap' + query)
+            .then(response => response.json())
+            .then(data => {
+                applyAuth(data);
+                return data;
+            })
+            .catch(error => {
+                console.error('Bootstrap failed:', error);
+                return { loggedIn: false, user: null };
+            });
+    }
+    return pageBootstrap;
+}
+
+/**
+ * Show the navigation for a /api/login or /api/bootstrap response and return its user.
+ */
+function applyAuth(data) {
+    const navUser = document.getElementById('nav-user');
+    const navGuest = document.getElementById('nav-guest');
+    const adminLink = document.getElementById('admin-link');
+    const cartLink = document.getElementById('cart-link');
+    const ordersLinks = document.querySelectorAll('a[href="orders.html"]');
+
+    if (data.loggedIn) {
+        if (navUser) navUser.style.display = 'flex';
+        if (navGuest) navGuest.style.display = 'none';
+
+        if (data.user.role === 'admin') {
+            if (adminLink) adminLink.style.display = 'block';
+            if (cartLink) cartLink.style.display = 'none';
+            ordersLinks.forEach(link => link.style.display = 'none');
+        } else {
+            if (adminLink) adminLink.style.display = 'none';
+            if (cartLink) cartLink.style.display = 'block';
+            if (data.cart) {
+                setCartBadge(data.cart.itemCount);
             } else {
-                if (adminLink) adminLink.style.display = 'none';
-                if (cartLink) cartLink.style.display = 'block';
                 updateCartBadge();
             }
+        }
 
-            const logoutBtn = document.getElementById('logout-btn');
-            if (logoutBtn) {
-                logoutBtn.onclick = logout;
-            }
-
-            return data.user;
-        } else {
-            if (navUser) navUser.style.display = 'none';
-            if (navGuest) navGuest.style.display = 'flex';
-            return null;
+        const logoutBtn = document.getElementById('logout-btn');
+        if (logoutBtn) {
+            logoutBtn.onclick = logout;
         }
-    } catch (error) {
-        console.error('Auth check failed:', error);
+
+        return data.user;
+    } else {
+        if (navUser) navUser.style.display = 'none';
+        if (navGuest) navGuest.style.display = 'flex';
         return null;
     }
 }
@@ -78,17 +110,33 @@ async function updateCartBadge() {
         const response = await fetchAPI('/cart');
         if (response.ok) {
             const cart = await response.json();
-            const badge = document.getElementById('cart-badge');
-            if (badge) {
-                const itemCount = cart.items.reduce((sum, item) => sum + item.quantity, 0);
-                badge.textContent = itemCount;
-            }
+            setCartBadge(cart.items.reduce((sum, item) => sum + item.quantity, 0));
         }
     } catch (error) {
         console.error('Failed to update cart badge:', error);
     }
 }
 
+function setCartBadge(itemCount) {
+    const badge = document.getElementById('cart-badge');
+    if (badge) {
+        badge.textContent = itemCount;
+    }
+}
+
+/**
+ * Follow live stock and price changes. onChanges gets [{id, stock, price}] as they happen;
+ * onResync is called when the server could not say what changed (after a long disconnect
+ * or a burst of updates) and the caller should reload. The browser reconnects by itself.
+ */
+function watchStock(onChanges, onResync) {
+    if (!window.EventSource) return null;
+    const source = new EventSource(API_BASE + '/books/events');
+    source.addEventListener('stock', (e) => onChanges(JSON.parse(e.data)));
+    source.addEventListener('resync', () => onResync());
+    return source;
+}
+
 function formatPrice(price) {
     return `RM ${price.toFixed(2)}`;
 }
@@ -125,5 +173,5 @@ function displaySuccess(elementId, message) {
 }
 
 document.addEventListener('DOMContentLoaded', () => {
-    checkAuth();
+    bootstrapPage();
 });
@@ -1,24 +1,35 @@
+let ordersCursor = null;
+
 async function loadOrders() {
-    const user = await checkAuth();
+    const { user } = await bootstrapPage();
     if (!user) {
         window.location.href = 'login.html';
         return;
     }
 
+    document.getElementById('loading').style.display = 'block';
+    await loadOrdersPage(false);
+}
+
+async function loadOrdersPage(append) {
     try {
-        document.getElementById('loading').style.display = 'block';
-        const response = await fetchAPI('/orders');
-        const orders = await response.json();
+        const params = new URLSearchParams({ limit: 10 });
+        if (append && ordersCursor) params.set('cursor', ordersCursor);
+        const response = await fetchAPI(`/orders?${params}`);
+        const page = await response.json();
+        const orders = page.orders;
+        ordersCursor = page.nextCursor || null;
 
         document.getElementById('loading').style.display = 'none';
+        document.getElementById('orders-more').style.display = ordersCursor ? 'block' : 'none';
 
-        if (orders.length === 0) {
+        if (orders.length === 0 && !append) {
             document.getElementById('no-orders').style.display = 'block';
             return;
         }
 
         const container = document.getElementById('orders-list');
-        container.innerHTML = orders.sort((a, b) => b.createdAt - a.createdAt).map(order => `
+        container.insertAdjacentHTML('beforeend', orders.map(order => `
             <div class="order-card">
                 <div class="order-header">
                     <div>
@@ -47,11 +58,15 @@ async function loadOrders() {
                     <span class="order-total">${formatPrice(order.totalAmount)}</span>
                 </div>
             </div>
-        `).join('');
+        `).join(''));
     } catch (error) {
         console.error('Failed to load orders:', error);
         document.getElementById('loading').innerHTML = 'Failed to load orders';
     }
 }
 
-document.addEventListener('DOMContentLoaded', loadOrders);
+document.addEventListener('DOMContentLoaded', () => {
+    loadOrders();
+
+    document.getElementById('orders-more-btn').addEventListener('click', () => loadOrdersPage(true));
+});
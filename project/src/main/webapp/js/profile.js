@@ -1,5 +1,5 @@
 async function loadProfile() {
-    const user = await checkAuth();
+    const { user } = await bootstrapPage();
     if (!user) {
         window.location.href = 'login.html';
         return;
@@ -0,0 +1,108 @@
+package com.bookgetter.services;
+
+import com.bookgetter.models.Book;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Retained heap of a synthetic catalog as the parsed {@code List<Book>} and in each
+ * on-heap catalog layout. Every layout is built from a fresh list that is then dropped, so
+ * only what the layout itself keeps is counted. Figures are used heap after a full GC,
+ * minus the same figure before building.
+ * <p>
+ * Run with {@code gradle measureCatalogHeap [-Pbooks=1000000]}. The data is generated from
+ * a fixed seed: 8 categories, 50,000 authors, titles of 2-6 words and descriptions of
+ * 20-40 words.
+ */
+public class CatalogHeapMeasure {
+    private static final String[] CATEGORIES = {
+        "Fiction", "Technology", "Science", "History", "Children", "Business", "Art", "Travel"
+    };
+    private static final int AUTHORS = 50000;
+    private static final String[] WORDS = (
+        "the of and a river night garden house light winter city dark story secret road "
+        + "last first world time love war sea stone fire king queen moon star shadow glass "
+        + "silver golden hidden lost long journey letter island mountain forest empire machine "
+        + "code data system design pattern learning practical modern guide history art").split(" ");
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        System.out.println("Catalog of " + count + " synthetic titles");
+
+        report("List<Book>", count, books -> books);
+        report(BookService.STORE_OBJECTS, count, ObjectCatalogStore::new);
+        report(BookService.STORE_COLUMNAR, count, ColumnarCatalogStore::new);
+    }
+
+    private static void report(String layout, int count, Function<List<Book>, Object> build) {
+        long before = usedAfterGc();
+        Object kept = build.apply(generate(count));
+        long retained = usedAfterGc() - before;
+        String estimate = kept instanceof CatalogStore
+            ? ", estimated " + mb(((CatalogStore) kept).estimatedBytes()) : "";
+        System.out.println(String.format("%-12s retained %s%s", layout, mb(retained), estimate));
+        // Keep the layout reachable until it has been measured
+        if (kept.hashCode() == 42) {
+            System.out.println();
+        }
+    }
+
+    private static List<Book> generate(int count) {
+        Random random = new Random(201);
+        String[] authors = new String[AUTHORS];
+        for (int i = 0; i < AUTHORS; i++) {
+            authors[i] = capitalize(WORDS[random.nextInt(WORDS.length)]) + " "
+                + capitalize(WORDS[random.nextInt(WORDS.length)]) + " " + i;
+        }
+        List<Book> books = new ArrayList<>(count);
+        long createdAt = 1700000000000L;
+        for (int i = 0; i < count; i++) {
+            books.add(new Book(
+                new UUID(random.nextLong(), random.nextLong()).toString(),
+                capitalize(words(random, 2 + random.nextInt(5))),
+                // Parsed JSON holds a separate String per occurrence, not a shared one
+                new String(authors[random.nextInt(AUTHORS)]),
+                String.format("978%010d", i),
+                5 + random.nextInt(9500) / 100.0,
+                new String(CATEGORIES[random.nextInt(CATEGORIES.length)]),
+                capitalize(words(random, 20 + random.nextInt(21))) + ".",
+                "images/books/" + i + ".jpg",
+                random.nextInt(200),
+                createdAt + i * 1000L));
+        }
+        return books;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%,d MB", bytes / (1024 * 1024));
+    }
+}